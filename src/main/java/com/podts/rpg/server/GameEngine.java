@@ -1,11 +1,21 @@
 package com.podts.rpg.server;
 
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.podts.rpg.server.Profiler.Metric;
+
 public final class GameEngine {
 	
 	private static GameEngine instance;
@@ -16,9 +26,60 @@ public final class GameEngine {
 	
 	protected static void create(int poolSize) {
 		instance = new GameEngine(poolSize);
+		instance.start();
+	}
+	
+	/**
+	 * Runs the given task in the given phase of the next tick,
+	 * or right away if there is no game engine ticking.
+	 * @param phase - The phase to run the task in.
+	 * @param task - The task.
+	 */
+	public static void runInPhase(TickPhase phase, Runnable task) {
+		final GameEngine engine = get();
+		if(engine != null && engine.isTicking())
+			engine.defer(phase, task);
+		else
+			task.run();
 	}
 	
+	/**
+	 * The phases of a tick, in the order they run.
+	 * Every phase runs on the tick thread, so tasks of one phase never run at the same time as another.
+	 */
+	public enum TickPhase {
+		/**
+		 * Handles the packets that arrived since the last tick, one stream after another.
+		 */
+		INBOUND(),
+		/**
+		 * Updates entities.
+		 */
+		SIMULATE(),
+		/**
+		 * Notifies region listeners about entities that entered, moved in or left regions
+		 * during the earlier phases of the tick, in the order the entities moved.
+		 */
+		REGIONS(),
+		/**
+		 * Sends what changed during the tick to the players.
+		 */
+		OUTBOUND();
+	}
+	
+	public static final long DEFAULT_TICK_PERIOD = TimeUnit.MILLISECONDS.toNanos(50);
+	
 	private final ScheduledThreadPoolExecutor executor;
+	private final ScheduledExecutorService tickExecutor;
+	private final long tickPeriod;
+	
+	private final Map<TickPhase,List<Runnable>> tasks = new EnumMap<>(TickPhase.class);
+	private final Map<TickPhase,Queue<Runnable>> deferred = new EnumMap<>(TickPhase.class);
+	private final long[] phaseDurations = new long[TickPhase.values().length];
+	
+	private volatile boolean ticking;
+	private volatile Thread tickThread;
+	private volatile long tickCount, lastTickDuration, overrunCount;
 	
 	public <T> Future<T> submit(Callable<T> task) {
 		return executor.submit(task);
@@ -48,12 +109,163 @@ public final class GameEngine {
 		return executor.schedule(command, delay, unit);
 	}
 	
+	/**
+	 * Adds a task that runs in the given phase of every tick.
+	 * @param phase - The phase to run the task in.
+	 * @param task - The task.
+	 */
+	public void addTickTask(TickPhase phase, Runnable task) {
+		Utils.assertNullArg(phase, "Cannot add a tick task to a null phase.");
+		Utils.assertNullArg(task, "Cannot add a null tick task.");
+		tasks.get(phase).add(task);
+	}
+	
+	public boolean removeTickTask(TickPhase phase, Runnable task) {
+		return tasks.get(phase).remove(task);
+	}
+	
+	/**
+	 * Runs the given task once in the given phase of the next tick.
+	 * Tasks deferred to a phase while that phase runs are run in the next tick.
+	 * @param phase - The phase to run the task in.
+	 * @param task - The task.
+	 */
+	public void defer(TickPhase phase, Runnable task) {
+		Utils.assertNullArg(phase, "Cannot defer a task to a null phase.");
+		Utils.assertNullArg(task, "Cannot defer a null task.");
+		deferred.get(phase).add(task);
+	}
+	
+	public boolean isTicking() {
+		return ticking;
+	}
+	
+	/**
+	 * @return true if the current thread is running a tick.
+	 */
+	public boolean isTickThread() {
+		return Thread.currentThread() == tickThread;
+	}
+	
+	public long getTickPeriod(TimeUnit unit) {
+		return unit.convert(tickPeriod, TimeUnit.NANOSECONDS);
+	}
+	
+	public long getTickCount() {
+		return tickCount;
+	}
+	
+	/**
+	 * @return The number of ticks that took longer than the tick period.
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+	
+	public long getLastTickDuration(TimeUnit unit) {
+		return unit.convert(lastTickDuration, TimeUnit.NANOSECONDS);
+	}
+	
+	public long getLastPhaseDuration(TickPhase phase, TimeUnit unit) {
+		return unit.convert(phaseDurations[phase.ordinal()], TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Runs every phase once.
+	 */
+	void tick() {
+		tickThread = Thread.currentThread();
+		final long start = System.nanoTime();
+		long phaseStart = start;
+		for(TickPhase phase : TickPhase.values()) {
+			runPhase(phase);
+			final long phaseEnd = System.nanoTime();
+			phaseDurations[phase.ordinal()] = phaseEnd - phaseStart;
+			Profiler.recordDuration(Metric.of(phase), phaseEnd - phaseStart);
+			phaseStart = phaseEnd;
+		}
+		lastTickDuration = phaseStart - start;
+		Profiler.recordDuration(Metric.TICK, lastTickDuration);
+		if(lastTickDuration > tickPeriod) {
+			++overrunCount;
+			logOverrun();
+		}
+		++tickCount;
+	}
+	
+	/**
+	 * Logs how long each phase of the last tick took.
+	 */
+	private void logOverrun() {
+		final Server server = Server.get();
+		if(server == null)
+			return;
+		final StringBuilder builder = new StringBuilder("Tick ").append(tickCount)
+				.append(" took ").append(Profiler.format(lastTickDuration))
+				.append(" of ").append(Profiler.format(tickPeriod)).append(':');
+		for(TickPhase phase : TickPhase.values()) {
+			builder.append(' ').append(phase.name().toLowerCase())
+			.append('=').append(Profiler.format(phaseDurations[phase.ordinal()]));
+		}
+		server.getLogger().warning(builder.toString());
+	}
+	
+	private void runPhase(TickPhase phase) {
+		final Queue<Runnable> queue = deferred.get(phase);
+		for(int i=queue.size(); i>0; --i) {
+			final Runnable task = queue.poll();
+			if(task == null)
+				break;
+			runSafely(task);
+		}
+		for(Runnable task : tasks.get(phase)) {
+			runSafely(task);
+		}
+	}
+	
+	private static void runSafely(Runnable task) {
+		try {
+			task.run();
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private void start() {
+		ticking = true;
+		tickExecutor.scheduleAtFixedRate(this::tick, tickPeriod, tickPeriod, TimeUnit.NANOSECONDS);
+	}
+	
 	protected void shutdown() {
+		ticking = false;
+		tickExecutor.shutdown();
+		try {
+			tickExecutor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		//Run what was deferred to the last tick so nothing is lost.
+		for(TickPhase phase : TickPhase.values()) {
+			final Queue<Runnable> queue = deferred.get(phase);
+			Runnable task;
+			while((task = queue.poll()) != null)
+				runSafely(task);
+		}
 		executor.shutdown();
 	}
 	
-	private GameEngine(int poolSize) {
+	GameEngine(int poolSize, long tickPeriod) {
 		executor = new ScheduledThreadPoolExecutor(poolSize);
+		tickExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Game Tick"));
+		this.tickPeriod = tickPeriod;
+		for(TickPhase phase : TickPhase.values()) {
+			tasks.put(phase, new CopyOnWriteArrayList<>());
+			deferred.put(phase, new ConcurrentLinkedQueue<>());
+		}
+	}
+	
+	private GameEngine(int poolSize) {
+		this(poolSize, DEFAULT_TICK_PERIOD);
 	}
 	
 	private final class SafeRunnable implements Runnable {
@@ -188,6 +188,13 @@ public class Player implements CommandSender {
 		return getStream().getPing();
 	}
 	
+	/**
+	 * @return true if the client of this player cannot keep up with the packets sent to it.
+	 */
+	public final boolean isSaturated() {
+		return getStream().isSaturated();
+	}
+	
 	public final String getUsername() {
 		return username;
 	}
@@ -206,8 +213,7 @@ public class Player implements CommandSender {
 	}
 
 	public final void sendPacket(Packet... packets) {
-		for(Packet p : packets)
-			getStream().sendPacket(p);
+		getStream().sendPacket(packets);
 	}
 	
 	@Override
@@ -0,0 +1,125 @@
+package com.podts.rpg.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.podts.rpg.server.GameEngine.TickPhase;
+import com.podts.rpg.server.utils.LatencyHistogram;
+
+/**
+ * Records how long the work of the server takes into a {@link LatencyHistogram} per kind of work.
+ * Usage is to take {@link #start()} before the work and pass it to {@link #record(Metric, long)} after.
+ */
+public final class Profiler {
+	
+	public enum Metric {
+		TICK("Tick"),
+		INBOUND_PHASE("Inbound phase"),
+		SIMULATE_PHASE("Simulate phase"),
+		REGIONS_PHASE("Regions phase"),
+		OUTBOUND_PHASE("Outbound phase"),
+		PACKET("Packet handling"),
+		MOVE("Entity move"),
+		CHUNK_GENERATION("Chunk generation"),
+		REGION_EVENT("Region event"),
+		ENCODE("Packet encode"),
+		FLUSH("Socket flush");
+		
+		private final String description;
+		
+		public String getDescription() {
+			return description;
+		}
+		
+		public static Metric of(TickPhase phase) {
+			return PHASES.get(phase);
+		}
+		
+		private Metric(String description) {
+			this.description = description;
+		}
+		
+	}
+	
+	private static final Map<TickPhase,Metric> PHASES = new EnumMap<>(TickPhase.class);
+	
+	static {
+		PHASES.put(TickPhase.INBOUND, Metric.INBOUND_PHASE);
+		PHASES.put(TickPhase.SIMULATE, Metric.SIMULATE_PHASE);
+		PHASES.put(TickPhase.REGIONS, Metric.REGIONS_PHASE);
+		PHASES.put(TickPhase.OUTBOUND, Metric.OUTBOUND_PHASE);
+	}
+	
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	
+	private static final LatencyHistogram[] histograms = new LatencyHistogram[Metric.values().length];
+	
+	static {
+		for(int i=0; i<histograms.length; ++i)
+			histograms[i] = new LatencyHistogram();
+	}
+	
+	public static long start() {
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Records the time since the given start.
+	 * @param metric - The kind of work that was done.
+	 * @param start - The time from {@link #start()} before the work was done.
+	 */
+	public static void record(Metric metric, long start) {
+		recordDuration(metric, System.nanoTime() - start);
+	}
+	
+	public static void recordDuration(Metric metric, long nanos) {
+		histograms[metric.ordinal()].record(nanos);
+	}
+	
+	public static LatencyHistogram getHistogram(Metric metric) {
+		return histograms[metric.ordinal()];
+	}
+	
+	public static void reset() {
+		for(LatencyHistogram histogram : histograms)
+			histogram.reset();
+	}
+	
+	/**
+	 * Describes the percentiles of the given metric in a single line.
+	 * @param metric - The metric.
+	 * @return The description.
+	 */
+	public static String describe(Metric metric) {
+		final LatencyHistogram histogram = getHistogram(metric);
+		final StringBuilder builder = new StringBuilder(metric.getDescription())
+				.append(": n=").append(histogram.getCount());
+		if(histogram.getCount() == 0)
+			return builder.toString();
+		for(double percentile : PERCENTILES) {
+			builder.append(" p").append(percentile == (int) percentile ? String.valueOf((int) percentile) : String.valueOf(percentile))
+			.append('=').append(format(histogram.getPercentile(percentile)));
+		}
+		return builder.append(" max=").append(format(histogram.getMax()))
+				.toString();
+	}
+	
+	/**
+	 * Formats a duration with a unit that fits its size.
+	 * @param nanos - The duration in nanoseconds.
+	 * @return The formatted duration.
+	 */
+	public static String format(long nanos) {
+		if(nanos < TimeUnit.MICROSECONDS.toNanos(10))
+			return nanos + "ns";
+		if(nanos < TimeUnit.MILLISECONDS.toNanos(10))
+			return String.format("%.1fus", nanos / 1000d);
+		return String.format("%.1fms", nanos / 1000000d);
+	}
+	
+	private Profiler() {
+		
+	}
+	
+}
@@ -1,5 +1,8 @@
 package com.podts.rpg.server;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,17 +15,21 @@ import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
+import com.podts.rpg.server.GameEngine.TickPhase;
 import com.podts.rpg.server.Player.LogoutReason;
 import com.podts.rpg.server.account.AcceptingAccountLoader;
 import com.podts.rpg.server.command.CommandHandler;
 import com.podts.rpg.server.command.GameLogger;
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
 import com.podts.rpg.server.model.universe.Universe;
 import com.podts.rpg.server.model.universe.Universe.WorldAlreadyExistsException;
-import com.podts.rpg.server.model.universe.generators.PerlinNoiseGenerator;
+import com.podts.rpg.server.model.universe.World;
 import com.podts.rpg.server.network.NetworkManager;
 import com.podts.rpg.server.network.NetworkStream;
 import com.podts.rpg.server.network.NetworkStreamListener;
+import com.podts.rpg.server.network.PacketHandler;
 import com.podts.rpg.server.network.netty.NettyNetworkManager;
+import com.podts.rpg.server.network.netty.NettyTransport;
 
 public final class Server {
 	
@@ -57,12 +64,24 @@ public final class Server {
 		ONLINE();
 	}
 	
+	private static final String PREGENERATE_OPTION = "--pregenerate=";
+	private static final String SEED_OPTION = "--seed=";
+	private static final String TRANSPORT_OPTION = "--transport=";
+	private static final String IO_THREADS_OPTION = "--io-threads=";
+	private static final String WORLDS_OPTION = "--worlds=";
+	
 	private final Logger logger;
 	
 	private ServerStatus status;
 	private final Set<ServerStatusHook> statusHooks;
 	private final Set<PlayerLoginListener> playerLoginListeners = new HashSet<>();
 	private int networkListenPort;
+	private final int pregenerateRadius;
+	/**
+	 * The seed of a new world, or null to base it on the current time.
+	 */
+	private final Long seed;
+	private final Path worldDirectory;
 	
 	private final NetworkManager networkManager;
 	private final AccountLoader accountLoader;
@@ -96,6 +115,10 @@ public final class Server {
 		return logger;
 	}
 	
+	public NetworkManager getNetworkManager() {
+		return networkManager;
+	}
+	
 	public boolean isRunning() {
 		return status == ServerStatus.ONLINE;
 	}
@@ -189,22 +212,43 @@ public final class Server {
 		changeStatus(ServerStatus.LOADING);
 		Runtime.getRuntime().addShutdownHook(shutdownHook);
 		
-		if (!networkManager.bind(networkListenPort)) {
-			getLogger().severe("Server failed to bind to " + networkManager.getPort());
-			changeStatus(ServerStatus.OFFLINE);
-			return;
-		}
-		
-		getLogger().info("Server bound to " + networkManager.getBoundAddressWithPort());
-		
 		GameEngine.create(4);
+		GameEngine.get().addTickTask(TickPhase.INBOUND, PacketHandler::drainMailboxes);
 		
+		//The world is created and warmed up before players can connect.
+		Universe.get().setWorldDirectory(worldDirectory);
 		try {
-			Universe.get().createWorld("Earth", new PerlinNoiseGenerator());
+			final long worldSeed = Universe.get().loadSeed("Earth", seed == null ? System.currentTimeMillis() : seed);
+			if(seed != null && worldSeed != seed)
+				getLogger().warning("Earth was created with seed " + worldSeed + ", ignoring seed " + seed + ".");
+			getLogger().info("Creating Earth with seed " + worldSeed + ".");
+			final World world = Universe.get().createWorld("Earth", worldSeed);
+			if(pregenerateRadius > 0 && world instanceof StaticChunkWorld) {
+				getLogger().info("Pregenerating " + world.getName() + " within " + pregenerateRadius + " tiles of spawn.");
+				if(((StaticChunkWorld) world).getStorage() == null)
+					getLogger().info(world.getName() + " is not saved, the pregenerated chunks stay loaded.");
+				((StaticChunkWorld) world).pregenerate(0, 0, 0, pregenerateRadius, p -> getLogger().info(p.toString()));
+			}
 		} catch (WorldAlreadyExistsException e) {
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		if (!networkManager.bind(networkListenPort)) {
+			getLogger().severe("Server failed to bind to " + networkManager.getPort());
+			GameEngine.get().shutdown();
+			Universe.get().shutdown();
+			changeStatus(ServerStatus.OFFLINE);
+			return;
 		}
 		
+		if(networkManager instanceof NettyNetworkManager)
+			getLogger().info("Server bound to " + networkManager.getBoundAddressWithPort()
+			+ " using " + ((NettyNetworkManager) networkManager).getBoundTransport() + ".");
+		else
+			getLogger().info("Server bound to " + networkManager.getBoundAddressWithPort());
+		
 		changeStatus(ServerStatus.ONLINE);
 		getLogger().info("Server is now online and can handle login requests.");
 		
@@ -220,18 +264,25 @@ public final class Server {
 		GameEngine.get().shutdown();
 		Runtime.getRuntime().removeShutdownHook(shutdownHook);
 		networkManager.unbind();
+		Universe.get().shutdown();
 		changeStatus(ServerStatus.OFFLINE);
 	}
 	
 	/**
 	 * Creates a new instance of a server that will listen on the specified port.
 	 * @param port
+	 * @param pregenerateRadius - The radius in tiles around spawn that is generated before players can connect, 0 to generate nothing.
+	 * @param seed - The seed of the terrain if the world is new, or null to base it on the current time.
+	 * @param worldDirectory - The directory the worlds are saved in, or null to not save them.
 	 */
-	private Server(int port) {
+	private Server(int port, int pregenerateRadius, Long seed, Path worldDirectory) {
 		if(instance == null) instance = this;
 		status = ServerStatus.OFFLINE;
 		logger = new GameLogger("Server");
 		networkListenPort = port;
+		this.pregenerateRadius = pregenerateRadius;
+		this.seed = seed;
+		this.worldDirectory = worldDirectory;
 		statusHooks = new HashSet<>();
 		commandHandler = new CommandHandler();
 		networkManager = new NettyNetworkManager(new NetworkStreamListener() {
@@ -247,8 +298,51 @@ public final class Server {
 		
 	}
 	
+	/**
+	 * Starts a server on port 7000.
+	 * Passing <code>--pregenerate=&lt;radius&gt;</code> generates the world within radius tiles of spawn before opening the network.
+	 * Passing <code>--seed=&lt;seed&gt;</code> sets the seed of a new world, otherwise the seed is based on the current time.
+	 * A saved world always keeps the seed it was created with.
+	 * Passing <code>--transport=&lt;nio|epoll&gt;</code> picks the socket transport, by default epoll is used where it is available.
+	 * Passing <code>--io-threads=&lt;threads&gt;</code> sets how many threads do the IO of connected players.
+	 * Passing <code>--worlds=&lt;directory&gt;</code> sets where the worlds are saved, by default <code>worlds</code>.
+	 * An empty directory keeps the worlds only in memory.
+	 */
 	public static void main(String[] args) {
-		Server server = new Server(7000);
+		int pregenerateRadius = 0;
+		Long seed = null;
+		NettyTransport transport = NettyTransport.best();
+		int ioThreads = 0;
+		Path worldDirectory = Paths.get("worlds");
+		for(String arg : args) {
+			try {
+				if(arg.startsWith(PREGENERATE_OPTION))
+					pregenerateRadius = Integer.parseInt(arg.substring(PREGENERATE_OPTION.length()));
+				else if(arg.startsWith(SEED_OPTION))
+					seed = Long.parseLong(arg.substring(SEED_OPTION.length()));
+				else if(arg.startsWith(IO_THREADS_OPTION))
+					ioThreads = Integer.parseInt(arg.substring(IO_THREADS_OPTION.length()));
+				else if(arg.startsWith(WORLDS_OPTION))
+					worldDirectory = arg.length() == WORLDS_OPTION.length() ? null : Paths.get(arg.substring(WORLDS_OPTION.length()));
+				else if(arg.startsWith(TRANSPORT_OPTION))
+					transport = NettyTransport.valueOf(arg.substring(TRANSPORT_OPTION.length()).toUpperCase());
+			} catch(NumberFormatException e) {
+				System.err.println("Option was not an integer: " + arg);
+				return;
+			} catch(InvalidPathException e) {
+				System.err.println("Invalid world directory: " + arg);
+				return;
+			} catch(IllegalArgumentException e) {
+				System.err.println("Unknown transport: " + arg);
+				return;
+			}
+		}
+		if(!transport.isAvailable())
+			System.err.println("Transport " + transport + " is not available, falling back to " + transport.orFallback() + ".");
+		Server server = new Server(7000, pregenerateRadius, seed, worldDirectory);
+		((NettyNetworkManager) server.getNetworkManager())
+		.setTransport(transport)
+		.setWorkerThreads(ioThreads);
 		server.start();
 	}
 	
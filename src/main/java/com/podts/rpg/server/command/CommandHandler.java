@@ -8,14 +8,24 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.podts.rpg.server.GameEngine;
 import com.podts.rpg.server.Player;
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
 import com.podts.rpg.server.Server;
 import com.podts.rpg.server.model.universe.Location;
 import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
 import com.podts.rpg.server.model.universe.Tile;
 import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.Universe;
+import com.podts.rpg.server.model.universe.World;
+import com.podts.rpg.server.network.NetworkManager;
+import com.podts.rpg.server.network.PacketHandler;
+import com.podts.rpg.server.network.netty.NettyNetworkManager;
 
 public final class CommandHandler {
 	
@@ -156,6 +166,74 @@ public final class CommandHandler {
 			}
 		});
 		
+		addCommand(new Command("pregenerate", 1, 2, "pregen") {
+			@Override
+			protected boolean doExecute(CommandSender sender, String original, String[] parameters) {
+				if(parameters.length < 1) {
+					sender.sendMessage("Usage: " + getSlashedName() + " <radius> [world]");
+					return false;
+				}
+				final int radius;
+				try {
+					radius = Integer.parseInt(parameters[0]);
+				} catch(NumberFormatException e) {
+					sender.sendMessage("Radius was not an integer!");
+					return true;
+				}
+				if(radius < 0) {
+					sender.sendMessage("Radius cannot be negative!");
+					return true;
+				}
+				final World world = parameters.length == 2 ? Universe.get().getWorld(parameters[1]) : Universe.get().getDefaultWorld();
+				if(!(world instanceof StaticChunkWorld)) {
+					sender.sendMessage("No world that can be pregenerated found!");
+					return true;
+				}
+				if(((StaticChunkWorld) world).getStorage() == null)
+					sender.sendMessage(world.getName() + " is not saved, the pregenerated chunks stay loaded.");
+				final Thread thread = new Thread(() -> {
+					try {
+						((StaticChunkWorld) world).pregenerate(0, 0, 0, radius, p -> sender.sendMessage(p.toString()));
+					} catch (InterruptedException e) {
+						sender.sendMessage("Pregeneration of " + world.getName() + " was interrupted.");
+					}
+				}, world.getName() + " Pregenerator");
+				thread.setDaemon(true);
+				thread.start();
+				return true;
+			}
+		});
+		
+		addCommand(new Command("perf", 0, 1) {
+			@Override
+			protected boolean doExecute(CommandSender sender, String original, String[] parameters) {
+				if(parameters.length == 1 && parameters[0].equalsIgnoreCase("reset")) {
+					Profiler.reset();
+					sender.sendMessage("Reset performance statistics.");
+					return true;
+				}
+				final GameEngine engine = GameEngine.get();
+				if(engine != null) {
+					sender.sendMessage("Ticks: " + engine.getTickCount() + " over budget: " + engine.getOverrunCount()
+					+ " last: " + Profiler.format(engine.getLastTickDuration(TimeUnit.NANOSECONDS)));
+				}
+				for(Metric metric : Metric.values()) {
+					sender.sendMessage(Profiler.describe(metric));
+				}
+				sender.sendMessage("Mailboxes: " + PacketHandler.getMailboxes().size() + " queued: " + PacketHandler.getQueuedPackets()
+				+ " high water: " + PacketHandler.getMailboxHighWater() + " paused: " + PacketHandler.getPausedStreams()
+				+ " pauses: " + PacketHandler.getReadPauses() + " disconnected: " + PacketHandler.getOverflowDisconnects());
+				final NetworkManager network = Server.get().getNetworkManager();
+				if(network instanceof NettyNetworkManager) {
+					final NettyNetworkManager netty = (NettyNetworkManager) network;
+					sender.sendMessage("Slow clients: " + netty.getSaturatedStreams() + " held: " + netty.getHeldPackets()
+					+ " merged: " + netty.getMergedPackets() + " dropped: " + netty.getDroppedPackets()
+					+ " disconnected: " + netty.getSaturationDisconnects());
+				}
+				return true;
+			}
+		});
+		
 		addCommand(new PlayerCommand("ping") {
 			@Override
 			protected boolean doExecute(Player player, String original, String[] parameters) {
@@ -0,0 +1,63 @@
+package com.podts.rpg.server.model.universe;
+
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.model.universe.generators.PerlinNoiseGenerator;
+
+/**
+ * Worlds with fixed seeds that generate the same tiles every run, so that benchmarks and load tests are comparable.
+ * The created worlds have no storage, so nothing saved by an earlier run changes them.
+ */
+public enum BenchmarkWorld {
+	
+	/**
+	 * Grass everywhere, generation costs next to nothing.
+	 */
+	FLAT(0) {
+		@Override
+		public WorldGenerator createGenerator() {
+			return new FillGenerator(TileType.GRASS);
+		}
+	},
+	
+	/**
+	 * Perlin noise terrain of grass, sand and water.
+	 */
+	TERRAIN(1376312589L),
+	
+	/**
+	 * Perlin noise terrain with a different layout than {@link #TERRAIN}.
+	 */
+	TERRAIN_ALTERNATE(789221L);
+	
+	private final long seed;
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Creates a new generator for this world, every generator generates the same tiles.
+	 * @return The new generator.
+	 */
+	public WorldGenerator createGenerator() {
+		return new PerlinNoiseGenerator(getSeed());
+	}
+	
+	public StaticChunkWorld create(int chunkSize) {
+		return new StaticChunkWorld(getName(), chunkSize, createGenerator());
+	}
+	
+	public StaticChunkWorld create() {
+		return new StaticChunkWorld(getName(), createGenerator());
+	}
+	
+	public String getName() {
+		return "Benchmark " + name().toLowerCase();
+	}
+	
+	private BenchmarkWorld(long seed) {
+		this.seed = seed;
+	}
+	
+}
@@ -0,0 +1,79 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.podts.rpg.server.Utils;
+
+/**
+ * Periodically unloads the chunks of a {@link StaticChunkWorld} that nobody is using anymore.
+ * A chunk is unloaded once it has been idle for longer than the idle timeout,
+ * or earlier when the loaded chunks take up more memory than the memory budget, least recently used first.
+ */
+final class ChunkEvictor {
+	
+	static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toNanos(5);
+	static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	private static final long PERIOD = TimeUnit.SECONDS.toNanos(10);
+	
+	private final StaticChunkWorld world;
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private volatile long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private ScheduledExecutorService executor;
+	
+	long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	void setIdleTimeout(long timeout, TimeUnit unit) {
+		Utils.assertArg(timeout < 0, "Cannot set a negative chunk idle timeout.");
+		idleTimeout = unit.toNanos(timeout);
+	}
+	
+	long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	void setMemoryBudget(long bytes) {
+		Utils.assertArg(bytes < 0, "Cannot set a negative chunk memory budget.");
+		memoryBudget = bytes;
+	}
+	
+	/**
+	 * Unloads every chunk that should be unloaded right now.
+	 * @return The number of unloaded chunks.
+	 */
+	int evict() {
+		return world.evictChunks(getIdleTimeout(), getMemoryBudget());
+	}
+	
+	synchronized void start() {
+		if(executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, world.getName() + " Chunk Evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(() -> {
+			try {
+				evict();
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}, PERIOD, PERIOD, TimeUnit.NANOSECONDS);
+	}
+	
+	synchronized void stop() {
+		if(executor == null)
+			return;
+		executor.shutdown();
+		executor = null;
+	}
+	
+	ChunkEvictor(final StaticChunkWorld world) {
+		this.world = world;
+	}
+	
+}
@@ -0,0 +1,112 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+
+/**
+ * Generates chunks on a dedicated pool of worker threads so that the threads handling packets never run a {@link WorldGenerator}.
+ * Concurrent requests for the same chunk share a single generation.
+ */
+final class ChunkGenerationService {
+	
+	private static final long SHUTDOWN_TIMEOUT = 10;
+	private static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	
+	private final ExecutorService executor;
+	private final ConcurrentMap<Chunk,CompletableFuture<Chunk>> pending = new ConcurrentHashMap<>();
+	private final ThreadLocal<Boolean> worker = ThreadLocal.withInitial(() -> false);
+	
+	/**
+	 * Returns a future that completes once the given chunk has been generated.
+	 * If the chunk is already generated the returned future is already complete.
+	 * @param chunk - The chunk to generate.
+	 * @return Future of the generated chunk.
+	 */
+	CompletableFuture<Chunk> generate(final Chunk chunk) {
+		if(chunk.isGenerated())
+			return CompletableFuture.completedFuture(chunk);
+		CompletableFuture<Chunk> future = pending.get(chunk);
+		if(future != null)
+			return future;
+		final CompletableFuture<Chunk> newFuture = new CompletableFuture<>();
+		future = pending.putIfAbsent(chunk, newFuture);
+		if(future != null)
+			return future;
+		executor.execute(() -> {
+			try {
+				chunk.generate();
+				pending.remove(chunk);
+				newFuture.complete(chunk);
+			} catch(Throwable t) {
+				pending.remove(chunk);
+				newFuture.completeExceptionally(t);
+			}
+		});
+		return newFuture;
+	}
+	
+	/**
+	 * Returns if the given chunk is waiting to be or is being generated.
+	 * @param chunk - The chunk.
+	 * @return true if the chunk is pending, false otherwise.
+	 */
+	boolean isPending(final Chunk chunk) {
+		return pending.containsKey(chunk);
+	}
+	
+	/**
+	 * Returns if the current thread is one of the workers of this service.
+	 * A worker must never wait on another generation, as it may be queued behind the worker itself.
+	 * @return true if called from a worker, false otherwise.
+	 */
+	boolean isWorkerThread() {
+		return worker.get();
+	}
+	
+	/**
+	 * Returns the number of chunks that are waiting to be or are being generated.
+	 * @return The number of pending chunks.
+	 */
+	int getPendingCount() {
+		return pending.size();
+	}
+	
+	/**
+	 * Stops the workers after the pending chunks have been generated.
+	 * Waits a short while for them to finish.
+	 */
+	void shutdown() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	ChunkGenerationService(final String name, final int workers) {
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory factory = r -> {
+			Thread thread = new Thread(() -> {
+				worker.set(true);
+				r.run();
+			}, name + " Chunk Generator #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		executor = Executors.newFixedThreadPool(workers, factory);
+	}
+	
+	ChunkGenerationService(final String name) {
+		this(name, DEFAULT_WORKERS);
+	}
+	
+}
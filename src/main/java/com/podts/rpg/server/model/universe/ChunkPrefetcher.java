@@ -0,0 +1,104 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.podts.rpg.server.model.entity.PlayerEntity;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+
+/**
+ * Predicts where players are heading from the chunks they move between
+ * and generates the chunks ahead of their view in the background,
+ * so that walking into a new area does not have to wait for generation.
+ */
+final class ChunkPrefetcher {
+	
+	/**
+	 * How much the latest chunk change counts towards the heading of a player.
+	 */
+	private static final double SMOOTHING = 0.5;
+	
+	/**
+	 * The heading along an axis needs to be at least this large before chunks are prefetched along it.
+	 */
+	private static final double THRESHOLD = 0.3;
+	
+	/**
+	 * How many chunks beyond the edge of the view are prefetched.
+	 */
+	private static final int LOOKAHEAD = 2;
+	
+	private static final class Heading {
+		
+		private double x, y;
+		
+		private void update(int dx, int dy) {
+			if(Math.abs(dx) > 1 || Math.abs(dy) > 1) {
+				//The player teleported, the previous heading means nothing anymore.
+				x = 0;
+				y = 0;
+				return;
+			}
+			x += (dx - x) * SMOOTHING;
+			y += (dy - y) * SMOOTHING;
+		}
+		
+		private int getStepX() {
+			return step(x);
+		}
+		
+		private int getStepY() {
+			return step(y);
+		}
+		
+		private static int step(double v) {
+			if(v >= THRESHOLD) return 1;
+			if(v <= -THRESHOLD) return -1;
+			return 0;
+		}
+		
+	}
+	
+	private final Map<Integer,Heading> headings = new ConcurrentHashMap<>();
+	
+	/**
+	 * Updates the heading of the given player after they moved into another chunk
+	 * and starts generating the chunks ahead of them.
+	 * @param pE - The player that moved.
+	 * @param to - The chunk the player moved into.
+	 * @param dx - The change in chunk x coordinate.
+	 * @param dy - The change in chunk y coordinate.
+	 * @param depth - The depth of chunks the player can see.
+	 */
+	void onChunkChange(final PlayerEntity pE, final Chunk to, final int dx, final int dy, final int depth) {
+		final Heading heading = headings.computeIfAbsent(pE.getID(), id -> new Heading());
+		final int sx, sy;
+		synchronized(heading) {
+			heading.update(dx, dy);
+			sx = heading.getStepX();
+			sy = heading.getStepY();
+		}
+		if(sx == 0 && sy == 0)
+			return;
+		for(int k=1; k<=LOOKAHEAD; ++k) {
+			final int ox = sx * k, oy = sy * k;
+			for(int j=-depth; j<=depth; ++j) {
+				for(int i=-depth; i<=depth; ++i) {
+					//Chunks that are already in view are generated by the view itself.
+					if(Math.max(Math.abs(ox + i), Math.abs(oy + j)) <= depth)
+						continue;
+					to.shift(ox + i, oy + j).generateAsync();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Forgets the heading of the given player.
+	 * @param pE - The player to forget.
+	 */
+	void forget(final PlayerEntity pE) {
+		headings.remove(pE.getID());
+	}
+	
+}
@@ -0,0 +1,182 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+
+/**
+ * Generates every chunk within a radius of a point ahead of time, so that players never wait for a cold area to generate.
+ * The chunks are split between the cores with a {@link ForkJoinPool} and the progress is reported while they generate.
+ * If the world has storage the chunks are saved once they are generated,
+ * otherwise they are kept loaded since they could only be brought back by generating them again.
+ */
+public final class ChunkPregenerator {
+	
+	/**
+	 * How often the progress is reported.
+	 */
+	static final long REPORT_PERIOD = TimeUnit.SECONDS.toNanos(1);
+	
+	/**
+	 * Tasks with at most this many chunks generate them instead of splitting further.
+	 */
+	private static final int LEAF_SIZE = 16;
+	
+	@FunctionalInterface
+	public static interface ProgressListener {
+		public void onProgress(Progress progress);
+	}
+	
+	/**
+	 * A snapshot of how far a pre-generation has come.
+	 */
+	public static final class Progress {
+		
+		private final int generated, total;
+		private final long elapsed;
+		
+		/**
+		 * @return The number of chunks that have been generated so far.
+		 */
+		public int getGenerated() {
+			return generated;
+		}
+		
+		/**
+		 * @return The number of chunks that will be generated.
+		 */
+		public int getTotal() {
+			return total;
+		}
+		
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+		}
+		
+		public double getChunksPerSecond() {
+			if(elapsed == 0)
+				return 0;
+			return generated * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		}
+		
+		public boolean isDone() {
+			return generated == total;
+		}
+		
+		@Override
+		public String toString() {
+			final int percent = total == 0 ? 100 : (int) (100L * generated / total);
+			return String.format("Generated %d/%d chunks (%d%%) at %.1f chunks/s", generated, total, percent, getChunksPerSecond());
+		}
+		
+		private Progress(int generated, int total, long elapsed) {
+			this.generated = generated;
+			this.total = total;
+			this.elapsed = elapsed;
+		}
+		
+	}
+	
+	private final class GenerateTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int from, to;
+		private final boolean keep;
+		
+		@Override
+		protected void compute() {
+			if(to - from <= LEAF_SIZE) {
+				for(int i=from; i<to; ++i) {
+					final Chunk chunk = world.findChunkAt(chunkXs[i], chunkYs[i], z).generate();
+					if(keep)
+						chunk.keep();
+					generated.incrementAndGet();
+				}
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new GenerateTask(from, middle, keep), new GenerateTask(middle, to, keep));
+		}
+		
+		private GenerateTask(int from, int to, boolean keep) {
+			this.from = from;
+			this.to = to;
+			this.keep = keep;
+		}
+		
+	}
+	
+	private final StaticChunkWorld world;
+	private final int z;
+	private final int[] chunkXs, chunkYs;
+	private final AtomicInteger generated = new AtomicInteger();
+	
+	int getTotal() {
+		return chunkXs.length;
+	}
+	
+	/**
+	 * Generates every chunk and waits for them to finish.
+	 * @param parallelism - The number of threads to generate with.
+	 * @param listener - Receives the progress every {@link #REPORT_PERIOD} and once when done, may be null.
+	 * @return The final progress.
+	 * @throws InterruptedException If the waiting thread was interrupted, the generation is stopped.
+	 */
+	Progress run(final int parallelism, final ProgressListener listener) throws InterruptedException {
+		final long start = System.nanoTime();
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			final GenerateTask task = new GenerateTask(0, getTotal(), world.getStorage() == null);
+			pool.execute(task);
+			while(true) {
+				try {
+					task.get(REPORT_PERIOD, TimeUnit.NANOSECONDS);
+					break;
+				} catch(TimeoutException e) {
+					if(listener != null)
+						listener.onProgress(new Progress(generated.get(), getTotal(), System.nanoTime() - start));
+				} catch(ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		world.saveChunks();
+		final Progress result = new Progress(generated.get(), getTotal(), System.nanoTime() - start);
+		if(listener != null)
+			listener.onProgress(result);
+		return result;
+	}
+	
+	/**
+	 * @param center - The chunk in the center of the chunks to generate.
+	 * @param radius - The radius in chunks.
+	 */
+	ChunkPregenerator(final Chunk center, final int radius) {
+		world = center.getSpace();
+		z = center.getZ();
+		final List<int[]> coords = new ArrayList<>();
+		for(int dy=-radius; dy<=radius; ++dy) {
+			for(int dx=-radius; dx<=radius; ++dx) {
+				if(dx * dx + dy * dy <= radius * radius)
+					coords.add(new int[] {center.chunkX() + dx, center.chunkY() + dy});
+			}
+		}
+		chunkXs = new int[coords.size()];
+		chunkYs = new int[coords.size()];
+		for(int i=0; i<coords.size(); ++i) {
+			chunkXs[i] = coords.get(i)[0];
+			chunkYs[i] = coords.get(i)[1];
+		}
+	}
+	
+}
@@ -0,0 +1,114 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.storage.ChunkStorage;
+
+/**
+ * Saves the dirty chunks of a {@link StaticChunkWorld} in the background.
+ * A chunk is queued once when it becomes dirty, so any number of changes to it before the next save are written together.
+ * Queued chunks are saved in batches ordered by their {@link ChunkStorage#regionOf(int, int, int) region} so that chunks stored together are written together.
+ */
+final class ChunkSaver {
+	
+	static final long DEFAULT_PERIOD = TimeUnit.SECONDS.toNanos(5);
+	private static final long SHUTDOWN_TIMEOUT = 30;
+	
+	/**
+	 * @return An order of chunks by plane, then by their region in the given storage, then by position.
+	 */
+	private static Comparator<Chunk> regionOrder(final ChunkStorage storage) {
+		return Comparator.comparingInt(Chunk::getZ)
+				.thenComparingLong((Chunk c) -> storage.regionOf(c.chunkX(), c.chunkY(), c.getZ()))
+				.thenComparingInt(Chunk::chunkY)
+				.thenComparingInt(Chunk::chunkX);
+	}
+	
+	private final StaticChunkWorld world;
+	private final Queue<Chunk> queue = new ConcurrentLinkedQueue<>();
+	private ScheduledExecutorService executor;
+	
+	/**
+	 * Queues the given chunk to be saved with the next batch.
+	 * @param chunk - The chunk that became dirty.
+	 */
+	void enqueue(final Chunk chunk) {
+		queue.add(chunk);
+	}
+	
+	int getQueuedCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * Saves every queued chunk and flushes the storage of the world.
+	 * @return The number of chunks that were saved.
+	 */
+	synchronized int flush() {
+		final List<Chunk> batch = new ArrayList<>();
+		Chunk chunk;
+		while((chunk = queue.poll()) != null)
+			batch.add(chunk);
+		if(batch.isEmpty())
+			return 0;
+		final ChunkStorage storage = world.getStorage();
+		if(storage != null)
+			batch.sort(regionOrder(storage));
+		int saved = 0;
+		for(Chunk c : batch) {
+			if(c.isDirty() && world.saveChunk(c))
+				++saved;
+		}
+		world.flushStorage();
+		return saved;
+	}
+	
+	synchronized void start() {
+		if(executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, world.getName() + " Chunk Saver");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}, DEFAULT_PERIOD, DEFAULT_PERIOD, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Stops saving in the background and waits for the current batch to finish.
+	 */
+	void stop() {
+		final ScheduledExecutorService executor;
+		synchronized(this) {
+			executor = this.executor;
+			this.executor = null;
+		}
+		if(executor == null)
+			return;
+		executor.shutdown();
+		try {
+			executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	ChunkSaver(final StaticChunkWorld world) {
+		this.world = world;
+	}
+	
+}
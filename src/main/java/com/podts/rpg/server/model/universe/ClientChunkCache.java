@@ -0,0 +1,163 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.podts.rpg.server.Player;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.network.packet.ChunkPacket;
+
+/**
+ * Remembers which version of each chunk a client holds, so that chunks are only sent when the client lacks them or they changed.
+ * Clients keep chunks after they leave view, the least recently viewed chunks are dropped once the cache is full
+ * and the client is told to drop them too.
+ * A chunk that changes while the client holds it is {@link #refresh(Chunk, boolean, boolean) refreshed},
+ * so the client never keeps stale tiles.
+ * Nothing is sent while the client is {@link Player#isSaturated() saturated},
+ * chunks that change in the meantime are marked stale and brought up to date once it caught up.
+ */
+final class ClientChunkCache {
+	
+	static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * The version of a chunk the client holds an outdated copy of.
+	 */
+	private static final long STALE = -1;
+	
+	private static final class Key {
+		
+		private final int x, y, z;
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(x, y, z);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return x == other.x && y == other.y && z == other.z;
+		}
+		
+		private Key(Chunk chunk) {
+			x = chunk.chunkX();
+			y = chunk.chunkY();
+			z = chunk.getZ();
+		}
+		
+	}
+	
+	private final Player player;
+	private final int capacity;
+	
+	/**
+	 * Version of every chunk the client holds, in order of when the client last viewed it.
+	 */
+	private final Map<Key,Long> versions = new LinkedHashMap<>(16, 0.75f, true);
+	
+	Player getPlayer() {
+		return player;
+	}
+	
+	/**
+	 * @param chunk - The chunk.
+	 * @return true if the client holds any version of the given chunk.
+	 */
+	synchronized boolean holds(final Chunk chunk) {
+		return versions.containsKey(new Key(chunk));
+	}
+	
+	/**
+	 * Sends the given chunk unless the client already holds its current version or is saturated.
+	 * @param chunk - The generated chunk that is in view of the client.
+	 * @return true if the chunk was sent.
+	 */
+	synchronized boolean send(final Chunk chunk) {
+		final Key key = new Key(chunk);
+		final long version = chunk.getVersion();
+		final Long held = versions.get(key);
+		if(held != null && held == version)
+			return false;
+		if(player.isSaturated())
+			return false;
+		player.sendPacket(ChunkPacket.constructCreate(key.x, key.y, key.z, version, chunk.getTileArray()));
+		versions.put(key, version);
+		trim();
+		return true;
+	}
+	
+	/**
+	 * Brings the clients copy of the given chunk up to date after its tiles changed.
+	 * Does nothing if the client does not hold the chunk.
+	 * @param chunk - The chunk whose tiles changed.
+	 * @param received - If the client already received the changed tiles, the chunk only needs to be marked as current.
+	 * @param inView - If the chunk is in view of the client, a chunk out of view is dropped instead of sent.
+	 */
+	synchronized void refresh(final Chunk chunk, final boolean received, final boolean inView) {
+		final Key key = new Key(chunk);
+		if(!versions.containsKey(key))
+			return;
+		if(player.isSaturated()) {
+			versions.put(key, STALE);
+		} else if(received) {
+			versions.put(key, chunk.getVersion());
+		} else if(inView) {
+			send(chunk);
+		} else {
+			versions.remove(key);
+			player.sendPacket(ChunkPacket.constructDestroy(key.x, key.y, key.z));
+		}
+	}
+	
+	/**
+	 * Marks every chunk the client holds as stale, called when chunks that were sent to it were dropped.
+	 */
+	synchronized void invalidate() {
+		versions.replaceAll((key, version) -> STALE);
+	}
+	
+	/**
+	 * Tells the client to drop the stale chunks that are out of its view.
+	 * The stale chunks in view are resent by {@link #send(Chunk)}.
+	 * @param center - The chunk the player is in.
+	 * @param depth - The number of chunks the player sees in every direction.
+	 */
+	synchronized void dropStale(final Chunk center, final int depth) {
+		if(player.isSaturated())
+			return;
+		final Iterator<Map.Entry<Key,Long>> it = versions.entrySet().iterator();
+		while(it.hasNext()) {
+			final Map.Entry<Key,Long> entry = it.next();
+			final Key key = entry.getKey();
+			if(entry.getValue() != STALE || key.z == center.getZ()
+					&& Math.abs(key.x - center.chunkX()) <= depth && Math.abs(key.y - center.chunkY()) <= depth)
+				continue;
+			it.remove();
+			player.sendPacket(ChunkPacket.constructDestroy(key.x, key.y, key.z));
+		}
+	}
+	
+	private void trim() {
+		final Iterator<Key> it = versions.keySet().iterator();
+		while(versions.size() > capacity) {
+			final Key eldest = it.next();
+			it.remove();
+			player.sendPacket(ChunkPacket.constructDestroy(eldest.x, eldest.y, eldest.z));
+		}
+	}
+	
+	/**
+	 * @param player - The player whose client is tracked.
+	 * @param capacity - The number of chunks the client keeps, this must be larger than the number of chunks in view.
+	 */
+	ClientChunkCache(final Player player, final int capacity) {
+		this.player = player;
+		this.capacity = capacity;
+	}
+	
+}
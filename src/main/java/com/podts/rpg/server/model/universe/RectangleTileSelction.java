@@ -52,9 +52,8 @@ public final class RectangleTileSelction extends TileSelection {
 		
 		@Override
 		public boolean hasNext() {
-			if(i < tiles.length) return true;
-			if(j < tiles[i].length) return true;
-			return false;
+			if(i < tiles.length) return j < tiles[i].length;
+			return j + 1 < tiles[0].length;
 		}
 
 		@Override
@@ -396,10 +396,19 @@ public abstract class Space implements HasSpace {
 		tile.element = element;
 		element.tile = tile;
 		element.onEnter();
-		sendToNearbyPlayers(tile, TilePacket.constructCreate(tile));
+		sendTileChange(tile);
 		return this;
 	}
 	
+	/**
+	 * Tells the players near the given tile that it changed.
+	 * Spaces that batch their tile changes can override this and send the changes later.
+	 * @param tile - The tile that changed.
+	 */
+	protected void sendTileChange(Tile tile) {
+		sendToNearbyPlayers(tile, TilePacket.constructCreate(tile));
+	}
+	
 	private void handleTileChange(Tile tile, TileElement element) {
 		Iterator<TileListener> it = tile.tileListenerIterator();
 		while(it.hasNext()) {
@@ -1,21 +1,31 @@
 package com.podts.rpg.server.model.universe;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import com.podts.rpg.server.GameEngine;
+import com.podts.rpg.server.GameEngine.TickPhase;
 import com.podts.rpg.server.Player;
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
 import com.podts.rpg.server.Utils;
 import com.podts.rpg.server.model.entity.PlayerEntity;
 import com.podts.rpg.server.model.universe.Location.Direction;
@@ -27,29 +37,139 @@ import com.podts.rpg.server.model.universe.region.PollableMonitoringRegion;
 import com.podts.rpg.server.model.universe.region.PollableRegion;
 import com.podts.rpg.server.model.universe.region.RectangularRegion;
 import com.podts.rpg.server.model.universe.region.Regions;
+import com.podts.rpg.server.model.universe.storage.ChunkStorage;
 import com.podts.rpg.server.network.packet.EntityPacket;
 import com.podts.rpg.server.network.packet.TilePacket;
+import com.podts.rpg.server.utils.LongKeyMap;
 
 public final class StaticChunkWorld extends World {
 	
 	private static final int DEFAULT_CHUNK_SIZE = 25;
 	private static final int DEFAULT_CHUNK_DEPTH = 1;
 	
-	private final Map<Integer,ChunkPlane> planes = new HashMap<>(),
+	/**
+	 * Palette of tile types, Chunks store the index of each tiles type into this array.
+	 */
+	private static final TileType[] TILE_TYPES = TileType.values();
+	private static final byte VOID_INDEX = (byte) TileType.VOID.ordinal();
+	
+	static {
+		if(TILE_TYPES.length > 256)
+			throw new AssertionError("Chunk palette cannot hold more than 256 TileTypes!");
+	}
+	
+	private static boolean isPlain(TileElement element) {
+		return element.getClass() == TileElement.class;
+	}
+	
+	/**
+	 * Number of locks that guard the creation of chunks in a single {@link ChunkPlane}.
+	 * Must be a power of two.
+	 */
+	private static final int CHUNK_CREATION_STRIPES = 64;
+	
+	/**
+	 * Rough number of bytes a chunk uses besides its tile types.
+	 */
+	private static final int CHUNK_OVERHEAD = 512;
+	
+	/**
+	 * Rough number of bytes a pinned tile uses.
+	 */
+	private static final int PINNED_TILE_OVERHEAD = 96;
+	
+	/**
+	 * Version of the format chunks are saved in.
+	 */
+	private static final byte DATA_VERSION = 1;
+	private static final int DATA_HEADER = 5;
+	
+	private final Map<Integer,ChunkPlane> planes = new ConcurrentHashMap<>(),
 			safePlanes = Collections.unmodifiableMap(planes);
 	
-	private final Map<Integer,Player> players = new HashMap<>();
+	private final Map<Integer,Player> players = new ConcurrentHashMap<>();
 	private final Collection<Player> safePlayers = Collections.unmodifiableCollection(players.values());
 	
-	private final Map<Integer,Entity> entities = new HashMap<>();
+	private final Map<Integer,Entity> entities = new ConcurrentHashMap<>();
 	
-	private final Collection<PollableRegion> registeredRegions = new HashSet<>();
-	private final Map<PollableRegion,Collection<Chunk>> cachedRegionChunks = new HashMap<>();
+	private final Collection<PollableRegion> registeredRegions = ConcurrentHashMap.newKeySet();
+	private final Map<PollableRegion,Collection<Chunk>> cachedRegionChunks = new ConcurrentHashMap<>();
 	
 	private final int chunkSize;
+	
+	/**
+	 * Distance from the top left of a chunk to its center.
+	 */
+	private final int chunkHalf;
+	
+	/**
+	 * log2 of the chunk size if it is a power of two, otherwise -1.
+	 * Power of two sized chunks locate positions with shifts and masks only.
+	 */
+	private final int chunkShift;
+	private final int chunkMask;
 	private final int chunkDepth;
 	
-	private ChunkPlane bottomPlane, topPlane;
+	private final ChunkGenerationService generationService;
+	private final ChunkPrefetcher prefetcher = new ChunkPrefetcher();
+	private final ChunkEvictor evictor = new ChunkEvictor(this);
+	private final ChunkSaver saver = new ChunkSaver(this);
+	private final TileChangeBroadcaster tileChanges = new TileChangeBroadcaster(this);
+	private final Runnable tileFlush = () -> tileChanges.flush();
+	private GameEngine tickEngine;
+	private final ViewRing viewRing;
+	private volatile ChunkStorage storage;
+	
+	/**
+	 * Time of the last eviction run, chunks that are accessed remember this as their last access.
+	 * Using a coarse clock means looking up a chunk rarely has to write to it.
+	 */
+	private volatile long accessClock = System.nanoTime();
+	
+	/**
+	 * Source of chunk versions, every change to any chunk gets a higher version than all before it.
+	 * A chunk that is unloaded and loaded again gets a new version too, so clients never keep an outdated copy.
+	 */
+	private final AtomicLong versionClock = new AtomicLong();
+	
+	/**
+	 * How the tiles around players are sent to their clients.
+	 */
+	public enum StreamMode {
+		/**
+		 * Tiles are sent as they come into view and destroyed as they leave it.
+		 */
+		TILES(),
+		/**
+		 * Whole chunks are sent as they come into view, clients keep them in a cache and they are only sent again once they change.
+		 */
+		CHUNKS();
+	}
+	
+	private volatile StreamMode streamMode = StreamMode.TILES;
+	private final Map<Integer,ClientChunkCache> chunkCaches = new ConcurrentHashMap<>();
+	
+	/**
+	 * The view a client that streams tiles holds while tiles are not streamed to it because it is saturated.
+	 */
+	private static final class PausedView {
+		
+		private final CLocation point;
+		/**
+		 * Set if tiles in the view changed or completed while the client was saturated, so its whole view has to be sent again.
+		 */
+		private volatile boolean stale;
+		
+		private PausedView(final CLocation point) {
+			this.point = point;
+		}
+		
+	}
+	
+	private final Map<Integer,PausedView> pausedViews = new ConcurrentHashMap<>();
+	
+	private final Object planeLock = new Object();
+	private volatile ChunkPlane bottomPlane, topPlane;
 	
 	@Override
 	public ChunkPlane getTopPlane() {
@@ -102,6 +222,14 @@ public final class StaticChunkWorld extends World {
 			return shift(dir.getX(), dir.getY());
 		}
 		
+		/**
+		 * Returns the key of this coordinate inside of its {@link ChunkPlane}.
+		 * @return The packed x and y of this coordinate.
+		 */
+		long getKey() {
+			return LongKeyMap.pack(getX(), getY());
+		}
+		
 		@Override
 		public String toString() {
 			return "[ChkCrd : " + getX() + ", " + getY() + ", " + getZ() + "]";
@@ -128,7 +256,7 @@ public final class StaticChunkWorld extends World {
 			this.x = x;
 			this.y = y;
 			this.z = z;
-			hash = Objects.hash(x, y, z);
+			hash = (x * 31 + y) * 31 + z;
 		}
 		
 	}
@@ -137,6 +265,11 @@ public final class StaticChunkWorld extends World {
 	
 	final class Chunk extends IncompleteRegion implements RectangularRegion, PollableMonitoringRegion, HasPlane {
 		
+		/**
+		 * A view of a single tile of a Chunk.
+		 * ChunkTiles are created on demand from the Chunks palette and are only kept by the Chunk
+		 * while they have listeners or a custom {@link TileElement}.
+		 */
 		final class ChunkTile extends Tile {
 			
 			@Override
@@ -148,12 +281,13 @@ public final class StaticChunkWorld extends World {
 				return Chunk.this;
 			}
 			
-			public ChunkTile(CLocation location) {
-				super(location);
+			@Override
+			void onListenersChange() {
+				getChunk().updatePin(this);
 			}
 			
-			public ChunkTile(TileType type, CLocation location) {
-				super(type, location);
+			public ChunkTile(TileElement element, CLocation location) {
+				super(element, location);
 			}
 			
 		}
@@ -162,19 +296,64 @@ public final class StaticChunkWorld extends World {
 		private final ChunkCoordinate coord;
 		private final CLocation topLeft;
 		
-		boolean generated = false;
+		volatile boolean generated = false;
 		
-		private final ChunkTile[][] tiles = new ChunkTile[getChunkSize()][getChunkSize()];
+		/**
+		 * If this Chunk has changes that its generator would not recreate.
+		 */
+		private volatile boolean dirty;
+		
+		/**
+		 * If this Chunk has been removed from its plane, it must not be used anymore.
+		 */
+		private volatile boolean unloaded;
+		
+		/**
+		 * If this Chunk must stay loaded even when nothing uses it.
+		 */
+		private volatile boolean kept;
+		
+		private final Object saveLock = new Object();
+		
+		private volatile long lastAccess = accessClock;
+		
+		/**
+		 * Version of the tiles of this Chunk, this changes whenever a tile changes or the chunk is generated or loaded.
+		 */
+		private volatile long version;
+		
+		/**
+		 * Indices of the tiles that changed since the last broadcast, null if none changed.
+		 * Only used while holding the lock of this Chunk.
+		 */
+		private BitSet changedTiles;
+		
+		/**
+		 * Palette index of every tile in this Chunk stored row by row.
+		 */
+		private final byte[] types = new byte[getChunkSize() * getChunkSize()];
+		
+		/**
+		 * Tiles that have listeners or a custom {@link TileElement} keyed by their index.
+		 * This is null until the first tile needs to be kept and is only changed while holding the lock of this Chunk.
+		 */
+		private volatile Map<Integer,ChunkTile> pinnedTiles;
 		
 		private final Map<Direction,Chunk> neighbors = new EnumMap<Direction,Chunk>(Direction.class);
 		
-		private final Map<Integer,Player> players = new HashMap<>(),
+		/**
+		 * Players that are close enough to see the entities in this Chunk.
+		 * A player subscribes to every chunk within the chunk depth of its own chunk and moves its subscriptions as it crosses chunk borders.
+		 */
+		private final Map<Integer,Player> subscribers = new ConcurrentHashMap<>();
+		
+		private final Map<Integer,Player> players = new ConcurrentHashMap<>(),
 				safePlayers = Collections.unmodifiableMap(players);
 		
-		private final Map<Integer,Entity> entities = new HashMap<>(),
+		private final Map<Integer,Entity> entities = new ConcurrentHashMap<>(),
 				safeEntities = Collections.unmodifiableMap(entities);
 		
-		private final Set<PollableRegion> regions = new HashSet<>(),
+		private final Set<PollableRegion> regions = ConcurrentHashMap.newKeySet(),
 				safeRegions = Collections.unmodifiableSet(regions);
 		
 		@Override
@@ -193,7 +372,95 @@ public final class StaticChunkWorld extends World {
 		}
 		
 		Chunk getNeighbor(Direction dir) {
-			return neighbors.get(dir);
+			synchronized(neighbors) {
+				return neighbors.get(dir);
+			}
+		}
+		
+		void setNeighbor(Direction dir, Chunk other) {
+			synchronized(neighbors) {
+				neighbors.put(dir, other);
+			}
+		}
+		
+		private void removeNeighbor(Direction dir, Chunk other) {
+			synchronized(neighbors) {
+				neighbors.remove(dir, other);
+			}
+		}
+		
+		private void unlinkNeighbors() {
+			for(Direction dir : Direction.getAll()) {
+				Chunk other = getNeighbor(dir);
+				if(other == null) continue;
+				other.removeNeighbor(dir.opposite(), this);
+				removeNeighbor(dir, other);
+			}
+		}
+		
+		/**
+		 * Marks this Chunk as accessed right now.
+		 */
+		void touch() {
+			final long clock = accessClock;
+			if(lastAccess != clock)
+				lastAccess = clock;
+		}
+		
+		long getLastAccess() {
+			return lastAccess;
+		}
+		
+		boolean isDirty() {
+			return dirty;
+		}
+		
+		/**
+		 * Marks this Chunk as changed and queues it to be saved if it was not dirty yet.
+		 * Must be called while holding the lock of this Chunk.
+		 */
+		private void markDirty() {
+			if(dirty)
+				return;
+			dirty = true;
+			if(getStorage() != null)
+				saver.enqueue(this);
+		}
+		
+		boolean isUnloaded() {
+			return unloaded;
+		}
+		
+		/**
+		 * Keeps this Chunk loaded for as long as its world exists.
+		 */
+		void keep() {
+			kept = true;
+		}
+		
+		/**
+		 * Returns a rough estimate of how many bytes this Chunk uses.
+		 * @return Estimated memory of this Chunk in bytes.
+		 */
+		long estimateMemory() {
+			final Map<Integer,ChunkTile> pinned = pinnedTiles;
+			return CHUNK_OVERHEAD + types.length + (pinned == null ? 0 : pinned.size() * PINNED_TILE_OVERHEAD);
+		}
+		
+		/**
+		 * Returns if anything still depends on this Chunk staying loaded.
+		 * @return true if this Chunk is in use, false otherwise.
+		 */
+		boolean isInUse() {
+			if(kept)
+				return true;
+			if(!entities.isEmpty() || !players.isEmpty() || !regions.isEmpty() || !subscribers.isEmpty())
+				return true;
+			if(generationService.isPending(this))
+				return true;
+			final Map<Integer,ChunkTile> pinned = pinnedTiles;
+			return pinned != null && pinned.values().stream()
+					.anyMatch(ChunkTile::hasListeners);
 		}
 		
 		int chunkSize() {
@@ -219,6 +486,14 @@ public final class StaticChunkWorld extends World {
 			return coord;
 		}
 		
+		int chunkX() {
+			return getCoordinate().getX();
+		}
+		
+		int chunkY() {
+			return getCoordinate().getY();
+		}
+		
 		int getZ() {
 			return getCoordinate().z;
 		}
@@ -235,14 +510,6 @@ public final class StaticChunkWorld extends World {
 			return regions.remove(r);
 		}
 		
-		private void initiateTiles() {
-			for(int i=0; i<tiles.length; ++i) {
-				for(int j=0; j<tiles[i].length; ++j) {
-					tiles[i][j] = new ChunkTile(topLeft.shift(i, j));
-				}
-			}
-		}
-		
 		@Override
 		public Collection<Location> getPoints() {
 			return points()
@@ -270,14 +537,17 @@ public final class StaticChunkWorld extends World {
 		final Stream<ChunkTile> allTiles() {
 			if(!isGenerated())
 				return Stream.empty();
-			return Stream.of(tiles)
-					.flatMap(Stream::of);
+			return IntStream.range(0, types.length)
+					.mapToObj(this::getTile);
 		}
 		
 		@Override
 		public final Stream<ChunkTile> tiles() {
-			return allTiles()
-					.filter(Tile::isNotVoid);
+			if(!isGenerated())
+				return Stream.empty();
+			return IntStream.range(0, types.length)
+					.filter(i -> types[i] != VOID_INDEX)
+					.mapToObj(this::getTile);
 		}
 		
 		@Override
@@ -291,44 +561,192 @@ public final class StaticChunkWorld extends World {
 		}
 		
 		private ChunkTile getTile(CLocation point) {
-			return getTile( ((getChunkSize()) - topLeft.getXDiff(point)) % getChunkSize()
-					, ((getChunkSize()) - topLeft.getYDiff(point)) % getChunkSize());
+			return getTile(point.getX() - topLeft.getX(), point.getY() - topLeft.getY());
+		}
+		
+		private int index(int x, int y) {
+			if(chunkShift >= 0)
+				return (y << chunkShift) | x;
+			return y * chunkSize() + x;
+		}
+		
+		private int indexX(int index) {
+			if(chunkShift >= 0)
+				return index & chunkMask;
+			return index % chunkSize();
+		}
+		
+		private int indexY(int index) {
+			if(chunkShift >= 0)
+				return index >> chunkShift;
+			return index / chunkSize();
 		}
 		
+		/**
+		 * Returns the tile at the given position relative to the top left of this Chunk.
+		 * Unless the tile is pinned a new view of the tile is created.
+		 * @param x - The x position inside this Chunk.
+		 * @param y - The y position inside this Chunk.
+		 * @return The tile at the given position.
+		 */
 		ChunkTile getTile(int x, int y) {
-			if(!isSet())
-				set();
-			return tiles[x][y];
+			return getTile(index(x, y));
 		}
 		
-		private boolean isSet() {
-			return tiles[0][0].getElement() != null;
+		private ChunkTile getTile(int index) {
+			ChunkTile tile = getPinnedTile(index);
+			if(tile != null)
+				return tile;
+			final int x = indexX(index), y = indexY(index);
+			return new ChunkTile(new TileElement(getType(index)),
+					new CLocation(this, topLeft.getX() + x, topLeft.getY() + y, getZ()));
 		}
 		
-		private void set() {
-			for(int j=0; j<getChunkSize(); ++j) {
-				for(int i=0; i<getChunkSize(); ++i) {
-					
+		/**
+		 * Copies the tiles of this Chunk that overlap the given rectangle into the array.
+		 * Each row of the overlap is a continuous span of this chunks tiles.
+		 * @param tiles - The array indexed by [x][y] relative to the top left of the rectangle.
+		 * @param left - The x position of the top left of the rectangle.
+		 * @param top - The y position of the top left of the rectangle.
+		 */
+		void copyTiles(final Tile[][] tiles, final int left, final int top) {
+			final int startX = Math.max(left, topLeft.getX()) - topLeft.getX();
+			final int endX = Math.min(left + tiles.length, topLeft.getX() + chunkSize()) - topLeft.getX();
+			final int startY = Math.max(top, topLeft.getY()) - topLeft.getY();
+			final int endY = Math.min(top + tiles[0].length, topLeft.getY() + chunkSize()) - topLeft.getY();
+			final int offsetX = topLeft.getX() - left, offsetY = topLeft.getY() - top;
+			for(int y=startY; y<endY; ++y) {
+				int index = index(startX, y);
+				for(int x=startX; x<endX; ++x) {
+					tiles[x + offsetX][y + offsetY] = getTile(index++);
+				}
+			}
+		}
+		
+		/**
+		 * Returns an array that contains a view of every tile in this Chunk indexed by [x][y].
+		 * @return Array of every tile in this Chunk.
+		 */
+		ChunkTile[][] getTileArray() {
+			final ChunkTile[][] result = new ChunkTile[chunkSize()][chunkSize()];
+			for(int j=0; j<chunkSize(); ++j) {
+				for(int i=0; i<chunkSize(); ++i) {
+					result[i][j] = getTile(i, j);
 				}
 			}
+			return result;
+		}
+		
+		TileType getType(int x, int y) {
+			return getType(index(x, y));
+		}
+		
+		private TileType getType(int index) {
+			return TILE_TYPES[types[index] & 0xFF];
+		}
+		
+		private ChunkTile getPinnedTile(int index) {
+			final Map<Integer,ChunkTile> pinned = pinnedTiles;
+			if(pinned == null)
+				return null;
+			return pinned.get(index);
+		}
+		
+		private int localIndex(Location point) {
+			return index(point.getX() - topLeft.getX(), point.getY() - topLeft.getY());
+		}
+		
+		/**
+		 * Returns the tile instance that should be used for changes at the location of the given tile.
+		 * This is the pinned tile if there is one, otherwise the given tile itself.
+		 * @param tile - The tile in this Chunk.
+		 * @return The tile that changes should be applied to.
+		 */
+		ChunkTile canonicalTile(ChunkTile tile) {
+			final ChunkTile pinned = getPinnedTile(localIndex(tile.getLocation()));
+			if(pinned != null)
+				return pinned;
+			return tile;
+		}
+		
+		/**
+		 * Saves the current element of the given tile into this Chunks palette and marks this Chunk dirty.
+		 * @param tile - The tile that has changed.
+		 * @return true if the tile was stored, false if this Chunk has been unloaded.
+		 */
+		synchronized boolean storeTile(ChunkTile tile) {
+			if(isUnloaded())
+				return false;
+			final int index = localIndex(tile.getLocation());
+			types[index] = (byte) tile.getType().ordinal();
+			updatePin(tile, index);
+			version = nextVersion();
+			markDirty();
+			if(changedTiles == null) {
+				changedTiles = new BitSet(types.length);
+				tileChanges.enqueue(this);
+			}
+			changedTiles.set(index);
+			return true;
+		}
+		
+		/**
+		 * Sets the element of the tile at the given position without notifying anything.
+		 * Elements that are not plain {@link TileElement TileElements} will have their tile kept.
+		 */
+		void setElement(int x, int y, TileElement element) {
+			final int index = index(x, y);
+			types[index] = (byte) element.getType().ordinal();
+			if(isPlain(element)) {
+				unPin(index);
+				return;
+			}
+			pin(index, new ChunkTile(element, new CLocation(this, topLeft.getX() + x, topLeft.getY() + y, getZ())));
+		}
+		
+		void updatePin(ChunkTile tile) {
+			updatePin(tile, localIndex(tile.getLocation()));
+		}
+		
+		private void updatePin(ChunkTile tile, int index) {
+			if(tile.hasListeners() || !isPlain(tile.getElement()))
+				pin(index, tile);
+			else if(getPinnedTile(index) == tile)
+				unPin(index);
+		}
+		
+		private synchronized void pin(int index, ChunkTile tile) {
+			if(pinnedTiles == null)
+				pinnedTiles = new ConcurrentHashMap<>();
+			pinnedTiles.put(index, tile);
 		}
 		
-		void setTile(ChunkTile newTile, int x, int y) {
-			tiles[x][y] = newTile;
+		private synchronized void unPin(int index) {
+			if(pinnedTiles == null)
+				return;
+			pinnedTiles.remove(index);
+			if(pinnedTiles.isEmpty())
+				pinnedTiles = null;
 		}
 		
 		@Override
 		public Chunk addEntity(Entity entity) {
-			if(entity instanceof PlayerEntity) {
-				PlayerEntity pE = (PlayerEntity) entity;
-				addPlayer(pE.getPlayer());
-			}
-			entities.put(entity.getID(), entity);
-			if(!(entity.getLocation() instanceof CLocation)) {
-				entity.setLocation(new CLocation(entity.getLocation()));
+			synchronized(this) {
+				if(!isUnloaded()) {
+					if(entity instanceof PlayerEntity) {
+						PlayerEntity pE = (PlayerEntity) entity;
+						addPlayer(pE.getPlayer());
+					}
+					entities.put(entity.getID(), entity);
+					if(!(entity.getLocation() instanceof CLocation)) {
+						entity.setLocation(new CLocation(entity.getLocation()));
+					}
+					((CLocation)entity.getLocation()).chunk = this;
+					return this;
+				}
 			}
-			((CLocation)entity.getLocation()).chunk = this;
-			return this;
+			//This Chunk was unloaded after it was looked up, add the entity to the chunk that replaced it.
+			return getPlane().getOrCreateChunk(getCoordinate()).addEntity(entity);
 		}
 		
 		@Override
@@ -349,21 +767,104 @@ public final class StaticChunkWorld extends World {
 			players.remove(player.getID());
 		}
 		
+		/**
+		 * Returns the players that can see the entities in this Chunk.
+		 * @return Stream of the subscribed players.
+		 */
+		Stream<Player> subscribers() {
+			return subscribers.values().stream();
+		}
+		
+		long getVersion() {
+			return version;
+		}
+		
+		/**
+		 * Returns the indices of the tiles that changed since this was last called and forgets them.
+		 * @return The changed tiles or null if none changed.
+		 */
+		synchronized BitSet takeChangedTiles() {
+			final BitSet result = changedTiles;
+			changedTiles = null;
+			return result;
+		}
+		
+		boolean isSubscribed(Player player) {
+			return subscribers.containsKey(player.getID());
+		}
+		
+		/**
+		 * Subscribes the given player to the entities in this Chunk.
+		 * @param player - The player that can now see this Chunk.
+		 * @return The chunk the player was subscribed to, which replaces this Chunk if it has been unloaded.
+		 */
+		Chunk subscribe(Player player) {
+			synchronized(this) {
+				if(!isUnloaded()) {
+					subscribers.put(player.getID(), player);
+					return this;
+				}
+			}
+			return getPlane().getOrCreateChunk(getCoordinate()).subscribe(player);
+		}
+		
+		void unsubscribe(Player player) {
+			subscribers.remove(player.getID());
+		}
+		
 		final boolean isGenerated() {
 			return generated;
 		}
 		
 		/**
 		 * Generates this Chunk if it is not already generated or the overwrite boolean is true.
+		 * A Chunk that is not generated yet is loaded from the storage of this world instead if it has been saved.
 		 * @param overwrite - If the chunk should be re-generated.
 		 * @return This Chunk for chaining.
 		 */
 		Chunk generate(final boolean overwrite) {
-			if(!isGenerated() || overwrite)
-				getSpace().generateChunk(this);
+			if(isGenerated() && !overwrite)
+				return this;
+			synchronized(this) {
+				if(overwrite || !isGenerated()) {
+					if(overwrite || !getSpace().loadChunk(this))
+						getSpace().generateChunk(this);
+					version = nextVersion();
+				}
+			}
 			return this;
 		}
 		
+		/**
+		 * Returns the saved form of this Chunk.
+		 * This is the format version, the chunk size and the palette index of every tile.
+		 * Tiles with custom elements are saved as their {@link TileType}.
+		 * @return The data of this Chunk.
+		 */
+		synchronized byte[] writeData() {
+			return ByteBuffer.allocate(DATA_HEADER + types.length)
+					.put(DATA_VERSION)
+					.putInt(chunkSize())
+					.put(types)
+					.array();
+		}
+		
+		/**
+		 * Replaces the tiles of this Chunk with the given saved data.
+		 * @param data - The data that was saved by {@link #writeData()}.
+		 * @return true if the data was read, false if it is not in a format this Chunk understands.
+		 */
+		synchronized boolean readData(byte[] data) {
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			if(data.length != DATA_HEADER + types.length
+					|| buffer.get() != DATA_VERSION
+					|| buffer.getInt() != chunkSize())
+				return false;
+			buffer.get(types);
+			pinnedTiles = null;
+			return true;
+		}
+		
 		/**
 		 * Generates this chunks tiles using this worlds generator.
 		 * <br>
@@ -374,6 +875,37 @@ public final class StaticChunkWorld extends World {
 			return generate(false);
 		}
 		
+		/**
+		 * Generates this chunks tiles in the background if it is not already generated.
+		 * @return Future that completes with this Chunk once it is generated.
+		 */
+		CompletableFuture<Chunk> generateAsync() {
+			return getSpace().generationService.generate(this);
+		}
+		
+		/**
+		 * Returns the chunk that is the given number of chunks away from this Chunk in the same plane,
+		 * creating it if it does not exist yet.
+		 * @param dx - The change in chunk x coordinate.
+		 * @param dy - The change in chunk y coordinate.
+		 * @return The shifted chunk.
+		 */
+		Chunk shift(int dx, int dy) {
+			return getPlane().getOrCreateChunk(getCoordinate().getX() + dx, getCoordinate().getY() + dy);
+		}
+		
+		/**
+		 * Returns if this Chunk is in the same plane and at most the given depth of chunks away from the given chunk.
+		 * @param center - The chunk in the center.
+		 * @param depth - The depth of chunks.
+		 * @return true if this Chunk is within the depth of the center chunk, false otherwise.
+		 */
+		boolean isWithin(Chunk center, int depth) {
+			return getPlane() == center.getPlane()
+					&& Math.abs(getCoordinate().getX() - center.getCoordinate().getX()) <= depth
+					&& Math.abs(getCoordinate().getY() - center.getCoordinate().getY()) <= depth;
+		}
+		
 		@Override
 		public List<Location> getCorners() {
 			return corners()
@@ -400,18 +932,18 @@ public final class StaticChunkWorld extends World {
 		protected Chunk(final ChunkPlane plane, final ChunkCoordinate coord) {
 			this.plane = plane;
 			this.coord = coord;
-			int x = coord.getX() * getChunkSize() - (getChunkSize()-1)/2;
-			int y = coord.getY() * getChunkSize() - (getChunkSize()-1)/2;
+			int x = getChunkOrigin(coord.getX());
+			int y = getChunkOrigin(coord.getY());
 			topLeft = new CLocation(this, x, y, coord.getZ());
-			initiateTiles();
 		}
 		
 	}
 	
 	private final class ChunkPlane extends Plane {
 		
-		private final Map<ChunkCoordinate,Chunk> chunks = new HashMap<>();
-		private final Set<PollableRegion> regions = new HashSet<>(),
+		private final LongKeyMap<Chunk> chunks = new LongKeyMap<>();
+		private final Object[] creationLocks = new Object[CHUNK_CREATION_STRIPES];
+		private final Set<PollableRegion> regions = ConcurrentHashMap.newKeySet(),
 				safeRegions = Collections.unmodifiableSet(regions);
 		
 		@Override
@@ -440,28 +972,79 @@ public final class StaticChunkWorld extends World {
 		}
 		
 		Chunk getOrCreateChunk(final ChunkCoordinate coord) {
-			synchronized(chunks) {
-				return chunks.computeIfAbsent(coord, this::createChunk);
+			return getOrCreateChunk(coord.getX(), coord.getY());
+		}
+		
+		/**
+		 * Returns the chunk with the given chunk coordinates in this plane, creating it if it does not exist yet.
+		 * Finding an existing chunk never blocks and does not allocate.
+		 * Creating a chunk only locks the stripe of its coordinates so unrelated chunks can be created in parallel.
+		 * @param cx - The chunk x coordinate.
+		 * @param cy - The chunk y coordinate.
+		 * @return The chunk at the given chunk coordinates.
+		 */
+		Chunk getOrCreateChunk(final int cx, final int cy) {
+			final long key = LongKeyMap.pack(cx, cy);
+			Chunk chunk = chunks.get(key);
+			if(chunk != null) {
+				chunk.touch();
+				return chunk;
+			}
+			synchronized(creationLocks[LongKeyMap.hash(key) & (CHUNK_CREATION_STRIPES - 1)]) {
+				chunk = chunks.get(key);
+				if(chunk == null) {
+					chunk = new Chunk(this, new ChunkCoordinate(cx, cy, getZ()));
+					chunks.put(key, chunk);
+					linkNeighbors(chunk);
+				}
 			}
+			return chunk;
 		}
 		
-		private Chunk createChunk(ChunkCoordinate coord) {
-			Chunk chunk = new Chunk(this, coord);
+		/**
+		 * Links the given chunk with its neighbors.
+		 * This must happen after the chunk is visible in this plane, so that of two neighbors created
+		 * at the same time at least one of them will find the other.
+		 */
+		private void linkNeighbors(Chunk chunk) {
+			final ChunkCoordinate coord = chunk.getCoordinate();
 			for(Direction dir : Direction.getAll()) {
 				Chunk other = findChunk(coord.shift(dir));
 				if(other == null) continue;
-				chunk.neighbors.put(dir, other);
-				other.neighbors.put(dir.opposite(), chunk);
+				chunk.setNeighbor(dir, other);
+				other.setNeighbor(dir.opposite(), chunk);
 			}
-			return chunk;
 		}
 		
 		public Chunk findChunk(ChunkCoordinate coord) {
-			return chunks.get(coord);
+			return findChunk(coord.getX(), coord.getY());
+		}
+		
+		/**
+		 * Returns the chunk with the given chunk coordinates in this plane without creating it.
+		 * @param cx - The chunk x coordinate.
+		 * @param cy - The chunk y coordinate.
+		 * @return The chunk or null if it has not been created.
+		 */
+		Chunk findChunk(final int cx, final int cy) {
+			final Chunk chunk = chunks.get(LongKeyMap.pack(cx, cy));
+			if(chunk != null)
+				chunk.touch();
+			return chunk;
+		}
+		
+		/**
+		 * Removes the given chunk from this plane.
+		 * @param chunk - The chunk to remove.
+		 * @return true if the chunk was removed, false if it was not in this plane.
+		 */
+		private boolean removeChunk(final Chunk chunk) {
+			final ChunkCoordinate coord = chunk.getCoordinate();
+			return chunks.remove(LongKeyMap.pack(coord.getX(), coord.getY()), chunk);
 		}
 		
 		Stream<Chunk> chunks() {
-			return chunks.values().stream();
+			return chunks.values();
 		}
 		
 		Stream<Chunk> generatedChunks() {
@@ -506,6 +1089,8 @@ public final class StaticChunkWorld extends World {
 		
 		private ChunkPlane(final int z) {
 			super(z);
+			for(int i=0; i<creationLocks.length; ++i)
+				creationLocks[i] = new Object();
 		}
 		
 	}
@@ -539,17 +1124,13 @@ public final class StaticChunkWorld extends World {
 			final Location sl = getChunk().topLeft;
 			final int nX = x + dx, nY = y + dy, nZ = z + dz;
 			Chunk c = chunk;
-			if(nZ != z ||
-					nX < sl.getX() ||
+			if(nZ != z) {
+				c = null;
+			} else if(nX < sl.getX() ||
 					nY < sl.getY() ||
 					nX - sl.getX() >= getChunkSize() ||
 					nY - sl.getY() >= getChunkSize()) {
-				ChunkCoordinate oldCoord = getChunk().getCoordinate();
-				ChunkCoordinate newCoord = getSpace().getCoordinateFromLocation(nX, nY, nZ);
-				if(oldCoord.distance(newCoord) == 1)
-					c = getChunk().getNeighbor(Direction.get(newCoord.getXDifference(oldCoord), newCoord.getYDifference(oldCoord)).get());
-				else
-					c = null;
+				c = getChunk().getPlane().findChunk(getChunkX(nX), getChunkY(nY));
 			}
 			
 			return new CLocation(c, nX, nY, nZ);
@@ -587,12 +1168,12 @@ public final class StaticChunkWorld extends World {
 		 * @return true if this location has a reference to its Chunk, false otherwise.
 		 */
 		final boolean hasChunk() {
-			return chunk != null;
+			return chunk != null && !chunk.isUnloaded();
 		}
 		
 		final Chunk getChunk() {
 			if(!hasChunk()) {
-				chunk = StaticChunkWorld.this.findChunk(this);
+				chunk = StaticChunkWorld.this.findChunk(getX(), getY(), getZ());
 			}
 			return chunk;
 		}
@@ -618,7 +1199,7 @@ public final class StaticChunkWorld extends World {
 		private CLocation(final int x, final int y, final int z) {
 			this(null, x, y, z);
 		}
-
+		
 		public CLocation(Location location) {
 			this(location.getX(), location.getY(), location.getZ());
 		}
@@ -637,7 +1218,7 @@ public final class StaticChunkWorld extends World {
 		Location loc = l.getLocation();
 		if(loc instanceof CLocation)
 			return chunk((CLocation) l.getLocation());
-		return chunk(new CLocation(loc.getX(), loc.getY(), loc.getZ()));
+		return findChunk(loc.getX(), loc.getY(), loc.getZ());
 	}
 	
 	private Chunk chunk(CLocation point) {
@@ -656,6 +1237,179 @@ public final class StaticChunkWorld extends World {
 		return plane.get().chunks();
 	}
 	
+	/**
+	 * Sets how long a chunk that nobody uses stays loaded.
+	 * @param timeout - The idle timeout.
+	 * @param unit - The unit of the timeout.
+	 */
+	public void setChunkIdleTimeout(long timeout, TimeUnit unit) {
+		evictor.setIdleTimeout(timeout, unit);
+	}
+	
+	/**
+	 * Sets roughly how many bytes the loaded chunks of this world may use
+	 * before chunks that nobody uses are unloaded early.
+	 * @param bytes - The memory budget in bytes.
+	 */
+	public void setChunkMemoryBudget(long bytes) {
+		evictor.setMemoryBudget(bytes);
+	}
+	
+	/**
+	 * Unloads the chunks that nothing depends on and that have been idle for longer than the given timeout.
+	 * If the loaded chunks still use more than the memory budget, the least recently used of those chunks are unloaded too.
+	 * @param idleTimeout - Nanoseconds after which an unused chunk is unloaded.
+	 * @param memoryBudget - Bytes the loaded chunks may use.
+	 * @return The number of unloaded chunks.
+	 */
+	int evictChunks(final long idleTimeout, final long memoryBudget) {
+		final long now = System.nanoTime();
+		accessClock = now;
+		
+		final List<Chunk> viewers = new ArrayList<>();
+		final List<Integer> viewDepths = new ArrayList<>();
+		for(Player player : players.values()) {
+			PlayerEntity pE = player.getEntity();
+			if(pE == null) continue;
+			viewers.add(chunk(pE));
+			viewDepths.add(Math.max(getViewDepth(pE.getViewingDistance()), getChunkDepth()) + 1);
+		}
+		
+		final List<Chunk> candidates = new ArrayList<>();
+		long memory = 0;
+		for(Chunk chunk : (Iterable<Chunk>) chunks()::iterator) {
+			memory += chunk.estimateMemory();
+			if(chunk.isInUse()) continue;
+			boolean viewed = false;
+			for(int i=0; i<viewers.size() && !viewed; ++i)
+				viewed = chunk.isWithin(viewers.get(i), viewDepths.get(i));
+			if(!viewed)
+				candidates.add(chunk);
+		}
+		
+		int evicted = 0;
+		final List<Chunk> remaining = new ArrayList<>();
+		for(Chunk chunk : candidates) {
+			if(now - chunk.getLastAccess() > idleTimeout && unloadChunk(chunk)) {
+				memory -= chunk.estimateMemory();
+				++evicted;
+			} else {
+				remaining.add(chunk);
+			}
+		}
+		
+		if(memory > memoryBudget) {
+			remaining.sort(Comparator.comparingLong(c -> c.getLastAccess() - now));
+			for(Chunk chunk : remaining) {
+				if(memory <= memoryBudget) break;
+				if(unloadChunk(chunk)) {
+					memory -= chunk.estimateMemory();
+					++evicted;
+				}
+			}
+		}
+		return evicted;
+	}
+	
+	/**
+	 * Saves the given chunk if it is dirty, removes it from its plane and unlinks it from its neighbors.
+	 * Chunks that are in use or could not be saved are kept.
+	 * @param chunk - The chunk to unload.
+	 * @return true if the chunk was unloaded, false otherwise.
+	 */
+	private boolean unloadChunk(final Chunk chunk) {
+		if(chunk.isDirty() && !saveChunk(chunk))
+			return false;
+		synchronized(chunk) {
+			//The chunk may have changed since it was saved.
+			if(chunk.isUnloaded() || chunk.isInUse() || chunk.isDirty())
+				return false;
+			if(!chunk.getPlane().removeChunk(chunk))
+				return false;
+			chunk.unloaded = true;
+		}
+		chunk.unlinkNeighbors();
+		return true;
+	}
+	
+	@Override
+	protected void onCreate() {
+		evictor.start();
+		saver.start();
+		//Tile changes are sent with the rest of the outbound traffic of a tick, or on their own without a game engine.
+		final GameEngine engine = GameEngine.get();
+		if(engine != null && engine.isTicking()) {
+			tickEngine = engine;
+			engine.addTickTask(TickPhase.OUTBOUND, tileFlush);
+		} else {
+			tileChanges.start();
+		}
+	}
+	
+	@Override
+	protected void onDelete() {
+		if(tickEngine != null) {
+			tickEngine.removeTickTask(TickPhase.OUTBOUND, tileFlush);
+			tickEngine = null;
+			tileChanges.flush();
+		} else {
+			tileChanges.stop();
+		}
+		evictor.stop();
+		generationService.shutdown();
+		saver.stop();
+		saveChunks();
+		final ChunkStorage storage = getStorage();
+		if(storage != null) {
+			try {
+				storage.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	ChunkSaver getChunkSaver() {
+		return saver;
+	}
+	
+	TileChangeBroadcaster getTileChangeBroadcaster() {
+		return tileChanges;
+	}
+	
+	private long nextVersion() {
+		return versionClock.incrementAndGet();
+	}
+	
+	public StreamMode getStreamMode() {
+		return streamMode;
+	}
+	
+	/**
+	 * Sets how tiles are sent to players, players that are already in this world keep the mode they joined with.
+	 * @param mode - The new mode.
+	 * @return This world for chaining.
+	 */
+	public StaticChunkWorld setStreamMode(StreamMode mode) {
+		Utils.assertNullArg(mode, "Cannot set a null stream mode.");
+		streamMode = mode;
+		return this;
+	}
+	
+	public ChunkStorage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Sets the storage that chunks of this world are saved into and loaded from.
+	 * @param storage - The storage or null if chunks should not be saved.
+	 * @return This world for chaining.
+	 */
+	public StaticChunkWorld setStorage(ChunkStorage storage) {
+		this.storage = storage;
+		return this;
+	}
+	
 	public Stream<Chunk> generatedChunks() {
 		return planes()
 				.flatMap(ChunkPlane::generatedChunks);
@@ -684,29 +1438,36 @@ public final class StaticChunkWorld extends World {
 	}
 	
 	private ChunkPlane getOrCreatePlane(final int z) {
+		final ChunkPlane plane = planes.get(z);
+		if(plane != null)
+			return plane;
 		return planes.computeIfAbsent(z, this::generatePlane);
 	}
 	
 	private ChunkPlane generatePlane(final int z) {
 		final ChunkPlane plane = new ChunkPlane(z);
-		if(getTopPlane() == null) {
-			topPlane = plane;
-			bottomPlane = plane;
-		} else if(plane.isAbove(getTopPlane())) {
-			topPlane = plane;
-		} else if(plane.isBelow(getBottomPlane())) {
-			bottomPlane = plane;
+		synchronized(planeLock) {
+			if(getTopPlane() == null) {
+				topPlane = plane;
+				bottomPlane = plane;
+			} else if(plane.isAbove(getTopPlane())) {
+				topPlane = plane;
+			} else if(plane.isBelow(getBottomPlane())) {
+				bottomPlane = plane;
+			}
 		}
 		return plane;
 	}
 	
 	private void removePlane(ChunkPlane plane) {
-		planes.remove(plane.getZ());
-		if(plane.isTop()) {
-			topPlane = findTopPlane();
-		}
-		if(plane.isBottom()) {
-			bottomPlane = findBottomPlane();
+		synchronized(planeLock) {
+			planes.remove(plane.getZ());
+			if(plane.isTop()) {
+				topPlane = findTopPlane();
+			}
+			if(plane.isBottom()) {
+				bottomPlane = findBottomPlane();
+			}
 		}
 	}
 	
@@ -729,9 +1490,18 @@ public final class StaticChunkWorld extends World {
 				.flatMap(Chunk::tiles);
 	}
 	
+	/**
+	 * Returns the depth of chunks that is needed to see every tile within the given distance.
+	 * @param distance - The viewing distance.
+	 * @return The depth of chunks.
+	 */
+	private int getViewDepth(double distance) {
+		return (int)Math.ceil(distance / getChunkSize());
+	}
+	
 	@Override
 	public Stream<ChunkTile> nearbyTiles(HasLocation l, double distance) {
-		int depth = (int)Math.ceil(distance / getChunkSize());
+		int depth = getViewDepth(distance);
 		return surroundingChunks(l, depth)
 				.peek(Chunk::generate)
 				.flatMap(Chunk::tiles)
@@ -771,12 +1541,23 @@ public final class StaticChunkWorld extends World {
 	 * @return Stream containing the non generated surrounding chunks of the point
 	 */
 	private Stream<Chunk> surroundingChunks(final CLocation point, final int depth) {
-		ChunkCoordinate center = getCoordinate(point);
+		if(point.hasChunk()) {
+			final Chunk center = point.getChunk();
+			return surroundingChunks(center.getPlane(), center.getCoordinate().getX(), center.getCoordinate().getY(), depth);
+		}
+		return surroundingChunks(point.getX(), point.getY(), point.getZ(), depth);
+	}
+	
+	private Stream<Chunk> surroundingChunks(final int x, final int y, final int z, final int depth) {
+		return surroundingChunks(getOrCreatePlane(z), getChunkX(x), getChunkY(y), depth);
+	}
+	
+	private Stream<Chunk> surroundingChunks(final ChunkPlane plane, final int cx, final int cy, final int depth) {
 		return IntStream.rangeClosed(-depth, depth)
-				.mapToObj(Integer::valueOf)
+				.boxed()
 				.flatMap(j -> {
 					return IntStream.rangeClosed(-depth, depth)
-							.mapToObj(i -> findChunk(center.shift(i, j)));
+							.mapToObj(i -> plane.getOrCreateChunk(cx + i, cy + j));
 				});
 	}
 	
@@ -785,15 +1566,45 @@ public final class StaticChunkWorld extends World {
 	}
 	
 	private Stream<Chunk> surroundingChunks(HasLocation l, int depth) {
-		return surroundingChunks(cLoc(l.getLocation()), depth);
+		final Location point = l.getLocation();
+		if(point instanceof CLocation)
+			return surroundingChunks((CLocation) point, depth);
+		return surroundingChunks(point.getX(), point.getY(), point.getZ(), depth);
 	}
 	
 	private Stream<Chunk> surroundingChunks(HasLocation l) {
-		return surroundingChunks(cLoc(l.getLocation()));
+		return surroundingChunks(l, getChunkDepth());
 	}
 	
 	private Chunk findChunk(final CLocation point) {
-		return findChunk(getCoordinate(point));
+		if(point.hasChunk())
+			return point.getChunk();
+		return findChunk(point.getX(), point.getY(), point.getZ());
+	}
+	
+	/**
+	 * Returns the chunk that contains the given point, creating it if needed.
+	 * Finding an existing chunk does not allocate.
+	 * @param x - The x coordinate of the point.
+	 * @param y - The y coordinate of the point.
+	 * @param z - The z coordinate of the point.
+	 * @return The chunk that contains the point.
+	 */
+	Chunk findChunk(final int x, final int y, final int z) {
+		return getOrCreatePlane(z)
+				.getOrCreateChunk(getChunkX(x), getChunkY(y));
+	}
+	
+	/**
+	 * Returns the chunk with the given chunk coordinates, creating it if it does not exist yet.
+	 * @param cx - The chunk x coordinate.
+	 * @param cy - The chunk y coordinate.
+	 * @param z - The z coordinate of the chunk.
+	 * @return The chunk at the given chunk coordinates.
+	 */
+	Chunk findChunkAt(final int cx, final int cy, final int z) {
+		return getOrCreatePlane(z)
+				.getOrCreateChunk(cx, cy);
 	}
 	
 	private Chunk findChunk(final ChunkCoordinate coord) {
@@ -810,8 +1621,11 @@ public final class StaticChunkWorld extends World {
 		return findChunk(coord).generate();
 	}
 	
-	private Chunk getGeneratedChunk(final HasLocation point) {
-		return getGeneratedChunk(getCoordinate(point.getLocation()));
+	private Chunk getGeneratedChunk(final HasLocation l) {
+		final Location point = l.getLocation();
+		if(point instanceof CLocation)
+			return findChunk((CLocation) point).generate();
+		return findChunk(point.getX(), point.getY(), point.getZ()).generate();
 	}
 	
 	private ChunkCoordinate getCoordinate(final CLocation point) {
@@ -825,9 +1639,40 @@ public final class StaticChunkWorld extends World {
 	}
 	
 	private ChunkCoordinate getCoordinateFromLocation(final int x, final int y, final int z) {
-		int cx = (int) Math.floor((x+(getChunkSize()-1)/2d)/getChunkSize());
-		int cy = (int) Math.floor((y+(getChunkSize()-1)/2d)/getChunkSize());
-		return new ChunkCoordinate(cx,cy,z);
+		return new ChunkCoordinate(getChunkX(x), getChunkY(y), z);
+	}
+	
+	/**
+	 * Returns the chunk x coordinate of the chunk that contains the given x position.
+	 */
+	private int getChunkX(final int x) {
+		return toChunk(x);
+	}
+	
+	/**
+	 * Returns the chunk y coordinate of the chunk that contains the given y position.
+	 */
+	private int getChunkY(final int y) {
+		return toChunk(y);
+	}
+	
+	/**
+	 * Chunks are centered around the origin, so the chunk of a position is the floor of its distance
+	 * from the edge of the center chunk divided by the chunk size.
+	 */
+	private int toChunk(final int v) {
+		if(chunkShift >= 0)
+			return (v + chunkHalf) >> chunkShift;
+		return Math.floorDiv(v + chunkHalf, chunkSize);
+	}
+	
+	/**
+	 * Returns the position of the top left edge of the chunk with the given chunk coordinate along a single axis.
+	 */
+	private int getChunkOrigin(final int c) {
+		if(chunkShift >= 0)
+			return (c << chunkShift) - chunkHalf;
+		return c * chunkSize - chunkHalf;
 	}
 	
 	/**
@@ -838,8 +1683,127 @@ public final class StaticChunkWorld extends World {
 	 * @param chunk - The chunk that will be (re)generated.
 	 */
 	private void generateChunk(final Chunk chunk) {
-		getWorldGenerator().doGenerateRectTiles(chunk.tiles, chunk.topLeft);
+		final long start = Profiler.start();
+		final WorldGenerator generator = getWorldGenerator();
+		final Location topLeft = chunk.topLeft;
+		//Chunks store their types row by row, so generators that support it write them directly.
+		if(generator.generateRect(topLeft.getX(), topLeft.getY(), chunk.getZ(), getChunkSize(), getChunkSize(), chunk.types)) {
+			chunk.pinnedTiles = null;
+		} else {
+			for(int j=0; j<getChunkSize(); ++j) {
+				for(int i=0; i<getChunkSize(); ++i) {
+					CLocation point = new CLocation(chunk, topLeft.getX() + i, topLeft.getY() + j, chunk.getZ());
+					chunk.setElement(i, j, generator.generateTile(point));
+				}
+			}
+		}
+		//Generated chunks need to be saved so the world stays the same even if the generator changes.
+		chunk.dirty = false;
+		if(getStorage() != null)
+			chunk.markDirty();
 		chunk.generated = true;
+		Profiler.record(Metric.CHUNK_GENERATION, start);
+	}
+	
+	/**
+	 * Loads the tiles of the given chunk from the storage of this world.
+	 * @param chunk - The chunk to load.
+	 * @return true if the chunk was loaded, false if there is no saved data for it.
+	 */
+	private boolean loadChunk(final Chunk chunk) {
+		final ChunkStorage storage = getStorage();
+		if(storage == null)
+			return false;
+		final ChunkCoordinate coord = chunk.getCoordinate();
+		try {
+			final byte[] data = storage.load(coord.getX(), coord.getY(), coord.getZ());
+			if(data == null || !chunk.readData(data))
+				return false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		chunk.dirty = false;
+		chunk.generated = true;
+		return true;
+	}
+	
+	/**
+	 * Saves the given chunk into the storage of this world if it is dirty.
+	 * The chunk is only locked while its data is copied, changing it never waits for the disk.
+	 * @param chunk - The chunk to save.
+	 * @return true if the chunk is saved, false if it could not be saved.
+	 */
+	boolean saveChunk(final Chunk chunk) {
+		final ChunkStorage storage = getStorage();
+		if(storage == null)
+			return false;
+		//Only one save of a chunk may run at a time so that older data never overwrites newer data.
+		synchronized(chunk.saveLock) {
+			final byte[] data;
+			synchronized(chunk) {
+				if(!chunk.isDirty())
+					return true;
+				data = chunk.writeData();
+				chunk.dirty = false;
+			}
+			try {
+				storage.save(chunk.chunkX(), chunk.chunkY(), chunk.getZ(), data);
+			} catch (IOException e) {
+				e.printStackTrace();
+				synchronized(chunk) {
+					chunk.markDirty();
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	void flushStorage() {
+		final ChunkStorage storage = getStorage();
+		if(storage == null)
+			return;
+		try {
+			storage.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Saves every dirty chunk of this world and flushes the storage.
+	 * This does nothing if this world has no storage.
+	 */
+	public void saveChunks() {
+		final ChunkStorage storage = getStorage();
+		if(storage == null)
+			return;
+		saver.flush();
+		chunks()
+		.filter(Chunk::isDirty)
+		.forEach(this::saveChunk);
+		flushStorage();
+	}
+	
+	/**
+	 * Generates every chunk within the given radius of a point using every core and waits for them to finish.
+	 * The chunks are saved to the storage of this world once they are generated,
+	 * or kept loaded if this world has no storage.
+	 * @param x - The x coordinate of the center.
+	 * @param y - The y coordinate of the center.
+	 * @param z - The z coordinate of the center.
+	 * @param radius - The radius in tiles.
+	 * @param listener - Receives the progress every second and once when done, may be null.
+	 * @return The final progress.
+	 * @throws InterruptedException If the calling thread was interrupted while waiting.
+	 */
+	public ChunkPregenerator.Progress pregenerate(final int x, final int y, final int z, final int radius,
+			final ChunkPregenerator.ProgressListener listener) throws InterruptedException {
+		Utils.assertArg(radius < 0, "Cannot pregenerate with a negative radius.");
+		final int chunkRadius = (radius + getChunkSize() - 1) / getChunkSize();
+		return new ChunkPregenerator(findChunk(x, y, z), chunkRadius)
+				.run(Runtime.getRuntime().availableProcessors(), listener);
 	}
 	
 	private Chunk shiftChunk(Chunk chunk, int dx, int dy, int dz) {
@@ -873,24 +1837,61 @@ public final class StaticChunkWorld extends World {
 	}
 	
 	@Override
-	protected void doGetTiles(Tile[][] tiles, Location topLeft) {
-		CLocation tL = (CLocation) topLeft;
-		Chunk topLeftChunk = tL.getChunk();
-		Chunk topRightChunk = tL.shift(tiles.length, 0).getChunk();
-		int chunkWidth = topRightChunk.getCoordinate().getX() - topLeftChunk.getCoordinate().getX();
-		Chunk bottomLeftChunk = tL.shift(0, tiles[0].length, 0).getChunk();
-		int chunkHeight = bottomLeftChunk.coord.getY() - topLeftChunk.coord.getY();
-		final int width = tiles.length, height = tiles[0].length;
-		//WOW
-	}
-	
-	protected void doSetTile(ChunkTile newTile) {
-		Location point = newTile.getLocation();
-		Chunk chunk = getGeneratedChunk(point);
-		Location topLeft = chunk.topLeft;
-		int x = point.getX() - topLeft.getX();
-		int y = point.getY() - topLeft.getY();
-		chunk.setTile(newTile, x, y);
+	protected void doGetTiles(final Tile[][] tiles, final Location topLeft) {
+		final int left = topLeft.getX(), top = topLeft.getY();
+		final int minX = getChunkX(left), maxX = getChunkX(left + tiles.length - 1);
+		final int minY = getChunkY(top), maxY = getChunkY(top + tiles[0].length - 1);
+		final ChunkPlane plane = getOrCreatePlane(topLeft.getZ());
+		//Callbacks of generated chunks run on the generator threads, which must not wait on the chunks queued behind them.
+		if(generationService.isWorkerThread()) {
+			for(int cy=minY; cy<=maxY; ++cy) {
+				for(int cx=minX; cx<=maxX; ++cx) {
+					plane.getOrCreateChunk(cx, cy).generate().copyTiles(tiles, left, top);
+				}
+			}
+			return;
+		}
+		//Start every missing chunk before waiting on any of them so they generate in parallel.
+		final List<CompletableFuture<Chunk>> chunks = new ArrayList<>((maxX - minX + 1) * (maxY - minY + 1));
+		for(int cy=minY; cy<=maxY; ++cy) {
+			for(int cx=minX; cx<=maxX; ++cx) {
+				chunks.add(plane.getOrCreateChunk(cx, cy).generateAsync());
+			}
+		}
+		for(CompletableFuture<Chunk> chunk : chunks) {
+			chunk.join().copyTiles(tiles, left, top);
+		}
+	}
+	
+	@Override
+	protected Space doSetTile(Tile tile, TileElement element) {
+		ChunkTile target;
+		if(tile instanceof ChunkTile && !((ChunkTile) tile).getChunk().isUnloaded()) {
+			ChunkTile cTile = (ChunkTile) tile;
+			target = cTile.getChunk().canonicalTile(cTile);
+		} else {
+			target = findTile(tile.getLocation());
+		}
+		super.doSetTile(target, element);
+		//The chunk may have been unloaded while the tile was changed, apply it to the chunk that replaced it.
+		while(!target.getChunk().storeTile(target)) {
+			target = findTile(target.getLocation());
+			super.doSetTile(target, element);
+		}
+		return this;
+	}
+	
+	/**
+	 * Changed tiles are collected by their chunk and sent once per tick by the {@link TileChangeBroadcaster}.
+	 */
+	@Override
+	protected void sendTileChange(Tile tile) {
+		
+	}
+	
+	private ChunkTile findTile(final Location point) {
+		final Chunk chunk = getGeneratedChunk(point);
+		return chunk.getTile(point.getX() - chunk.topLeft.getX(), point.getY() - chunk.topLeft.getY());
 	}
 	
 	public Stream<Entity> nearbyEntities(final Location point, final double distance) {
@@ -922,8 +1923,12 @@ public final class StaticChunkWorld extends World {
 	
 	@Override
 	protected Stream<Player> doNearbyPlayers(Location point) {
-		return surroundingChunks(point)
-				.flatMap(Chunk::players);
+		final Chunk chunk;
+		if(point instanceof CLocation)
+			chunk = findChunk((CLocation) point);
+		else
+			chunk = findChunk(point.getX(), point.getY(), point.getZ());
+		return chunk.subscribers();
 	}
 	
 	@Override
@@ -935,7 +1940,10 @@ public final class StaticChunkWorld extends World {
 			initPlayer((PlayerEntity) e);
 		
 		//Add entity to chunk
-		chunk(e).generate().addEntity(e);
+		final Chunk chunk = chunk(e).generate().addEntity(e);
+		if(Player.is(e))
+			surroundingChunks(chunk.getPlane(), chunk.chunkX(), chunk.chunkY(), getChunkDepth())
+			.forEach(c -> c.subscribe(((PlayerEntity) e).getPlayer()));
 		
 		//Add entity to world-wide collection.
 		entities.put(e.getID(), e);
@@ -959,19 +1967,197 @@ public final class StaticChunkWorld extends World {
 		addPlayer(player);
 		player.sendPacket(EntityPacket.constructCreate(pE));
 		
-		view(pE).forEach(t -> sendCreateTile(player, t));
+		final int depth = getViewDepth(pE.getViewingDistance());
+		if(getStreamMode() == StreamMode.CHUNKS) {
+			final int viewed = (2 * depth + 1) * (2 * depth + 1);
+			final ClientChunkCache cache = new ClientChunkCache(player, Math.max(ClientChunkCache.DEFAULT_CAPACITY, viewed * 2));
+			chunkCaches.put(pE.getID(), cache);
+			surroundingChunks(pE, depth)
+			.forEach(c -> sendChunkWhenGenerated(pE, cache, c));
+		} else {
+			surroundingChunks(pE, depth)
+			.forEach(c -> sendViewWhenGenerated(pE, c));
+		}
 		nearbyEntities(pE)
 		.forEach(e -> sendCreateEntity(e, player));
 		
 	}
 	
-	private Stream<? extends Tile> view(PlayerEntity p) {
-		return nearbyTiles(p, p.getViewingDistance());
+	/**
+	 * Sends every tile of the given chunk that the player can see once the chunk is generated.
+	 * The tiles are chosen by where the player is when the chunk completes, not when it was requested.
+	 * @param pE - The player that should receive the tiles.
+	 * @param chunk - The chunk that is in view of the player.
+	 */
+	private void sendViewWhenGenerated(final PlayerEntity pE, final Chunk chunk) {
+		chunk.generateAsync()
+		.thenAccept(c -> {
+			if(!isRegistered(pE)) return;
+			if(isViewPaused(pE)) {
+				pauseView(pE, cLoc(pE.getLocation())).stale = true;
+				return;
+			}
+			final Location point = pE.getLocation();
+			final Location topLeft = c.topLeft;
+			viewRing.within(point.getX(), point.getY(), pE.getViewingDistance(),
+					topLeft.getX(), topLeft.getY(), getChunkSize(), getChunkSize(),
+					(left, top, width, height) -> sendTiles(pE.getPlayer(), c, left, top, width, height, true));
+		})
+		.exceptionally(t -> {
+			t.printStackTrace();
+			return null;
+		});
+	}
+	
+	/**
+	 * Sends the chunks around a player that its client does not hold yet or that changed since it got them.
+	 * @param pE - The player whose view moved.
+	 * @param cache - The chunks the client of the player holds.
+	 * @param center - The chunk the player is in.
+	 */
+	private void streamChunks(final PlayerEntity pE, final ClientChunkCache cache, final Chunk center) {
+		surroundingChunks(center.getPlane(), center.chunkX(), center.chunkY(), getViewDepth(pE.getViewingDistance()))
+		.forEach(c -> sendChunkWhenGenerated(pE, cache, c));
+	}
+	
+	/**
+	 * Called once the changed tiles of the given chunk have been sent to its subscribers.
+	 * Clients that stream chunks may hold the chunk without being subscribed to it,
+	 * the chunk is resent to them if it is in their view and dropped otherwise so it is sent again once it comes back into view.
+	 * @param chunk - The chunk whose tiles changed.
+	 */
+	void refreshChunkCaches(final Chunk chunk) {
+		for(ClientChunkCache cache : chunkCaches.values()) {
+			if(!cache.holds(chunk))
+				continue;
+			final Player player = cache.getPlayer();
+			final PlayerEntity pE = player.getEntity();
+			final Location point = pE.getLocation();
+			final Chunk center = findChunk(point.getX(), point.getY(), point.getZ());
+			cache.refresh(chunk, chunk.isSubscribed(player), chunk.isWithin(center, getViewDepth(pE.getViewingDistance())));
+		}
+	}
+	
+	/**
+	 * Remembers that tiles in the view of the given player were not sent because its client is saturated.
+	 * Does nothing for players that stream chunks, their {@link ClientChunkCache} remembers what they miss.
+	 * @param player - The player that was skipped.
+	 */
+	void skipTiles(final Player player) {
+		final PlayerEntity pE = player.getEntity();
+		if(!chunkCaches.containsKey(pE.getID()))
+			pauseView(pE, cLoc(pE.getLocation())).stale = true;
+	}
+	
+	/**
+	 * @return true if tiles should not be streamed to the given player until its client caught up.
+	 */
+	private boolean isViewPaused(final PlayerEntity pE) {
+		return pE.getPlayer().isSaturated() || pausedViews.containsKey(pE.getID());
+	}
+	
+	/**
+	 * @param point - The point of the view the client holds, ignored if the view is paused already.
+	 * @return The paused view of the given player.
+	 */
+	private PausedView pauseView(final PlayerEntity pE, final CLocation point) {
+		return pausedViews.computeIfAbsent(pE.getID(), id -> new PausedView(point));
+	}
+	
+	/**
+	 * Sends what the client of the given player missed while it was saturated.
+	 * Clients that stream chunks are sent the chunks in view they lack and told to drop the stale ones out of view.
+	 * Clients that stream tiles are sent the change from the view they hold to the current one,
+	 * or their whole view again if tiles they hold changed or were dropped.
+	 */
+	@Override
+	public void resumeStreaming(final Player player, final boolean dropped) {
+		final PlayerEntity pE = player.getEntity();
+		if(pE == null || !isRegistered(pE))
+			return;
+		final CLocation point = cLoc(pE.getLocation());
+		final ClientChunkCache cache = chunkCaches.get(pE.getID());
+		if(cache != null) {
+			if(dropped)
+				cache.invalidate();
+			final Chunk center = point.getChunk();
+			streamChunks(pE, cache, center);
+			cache.dropStale(center, getViewDepth(pE.getViewingDistance()));
+			return;
+		}
+		if(player.isSaturated()) {
+			if(dropped)
+				pauseView(pE, point).stale = true;
+			return;
+		}
+		final PausedView paused = pausedViews.remove(pE.getID());
+		if(paused != null)
+			updateView(pE, paused.point, point, dropped || paused.stale);
+		else if(dropped)
+			updateView(pE, point, point, true);
+	}
+	
+	private void sendChunkWhenGenerated(final PlayerEntity pE, final ClientChunkCache cache, final Chunk chunk) {
+		if(chunk.isGenerated()) {
+			cache.send(chunk);
+			return;
+		}
+		chunk.generateAsync()
+		.thenAccept(c -> {
+			if(chunkCaches.get(pE.getID()) == cache)
+				cache.send(c);
+		})
+		.exceptionally(t -> {
+			t.printStackTrace();
+			return null;
+		});
+	}
+	
+	/**
+	 * Sends the tiles that came into view and destroys the tiles that left the view of a player that has moved.
+	 * Only the ends of each row of the view are visited, so a step costs the perimeter of the view instead of its area.
+	 * Chunks that are not generated yet are never known by the player,
+	 * they are generated in the background and sent once they complete.
+	 * @param pE - The player that moved.
+	 * @param oldPoint - Where the player was.
+	 * @param newPoint - Where the player is now.
+	 * @param full - True to destroy the whole old view and send the whole new one, even where they overlap.
+	 */
+	private void updateView(final PlayerEntity pE, final CLocation oldPoint, final CLocation newPoint, final boolean full) {
+		final Player player = pE.getPlayer();
+		final double distance = pE.getViewingDistance();
+		final ChunkPlane oldPlane = getOrCreatePlane(oldPoint.getZ());
+		final ChunkPlane newPlane = getOrCreatePlane(newPoint.getZ());
+		//A player that changed planes sees nothing of the previous view anymore.
+		final double seenDistance = oldPlane == newPlane && !full ? distance : -1;
+		
+		viewRing.changes(newPoint.getX(), newPoint.getY(), seenDistance, oldPoint.getX(), oldPoint.getY(), distance,
+				(left, top, width, height) -> {
+					final Chunk chunk = oldPlane.getOrCreateChunk(getChunkX(left), getChunkY(top));
+					if(chunk.isGenerated())
+						sendTiles(player, chunk, left, top, width, height, false);
+				});
+		
+		final Set<Chunk> pending = new HashSet<>();
+		viewRing.changes(oldPoint.getX(), oldPoint.getY(), seenDistance, newPoint.getX(), newPoint.getY(), distance,
+				(left, top, width, height) -> {
+					final Chunk chunk = newPlane.getOrCreateChunk(getChunkX(left), getChunkY(top));
+					if(chunk.isGenerated())
+						sendTiles(player, chunk, left, top, width, height, true);
+					else if(pending.add(chunk))
+						sendViewWhenGenerated(pE, chunk);
+				});
 	}
 	
-	private Collection<Tile> getView(HasLocation l, double distance) {
-		return nearbyTiles(l, distance)
-				.collect(Collectors.toSet());
+	/**
+	 * Sends a rectangle of tiles that lies inside a single chunk as one group packet.
+	 * @param create - True to create the tiles, false to destroy them.
+	 */
+	private static void sendTiles(final Player player, final Chunk chunk,
+			final int left, final int top, final int width, final int height, final boolean create) {
+		final Tile[][] tiles = new Tile[width][height];
+		chunk.copyTiles(tiles, left, top);
+		player.sendPacket(create ? TilePacket.constructCreate(tiles) : TilePacket.constructDestroy(tiles));
 	}
 	
 	private void sendEntireChunk(Chunk chunk, Player player) {
@@ -1017,8 +2203,16 @@ public final class StaticChunkWorld extends World {
 				PlayerEntity pE = (PlayerEntity) e;
 				chunk.removePlayer(pE.getPlayer());
 				removePlayer(pE.getPlayer());
+				prefetcher.forget(pE);
+				chunkCaches.remove(pE.getID());
+				pausedViews.remove(pE.getID());
 			}
 		}
+		if(Player.is(e)) {
+			final Player player = ((PlayerEntity) e).getPlayer();
+			surroundingChunks(chunk.getPlane(), chunk.chunkX(), chunk.chunkY(), getChunkDepth())
+			.forEach(c -> c.unsubscribe(player));
+		}
 		nearbyPlayers(e).forEach(p -> p.sendPacket(EntityPacket.constructDestroy(e)));
 		return true;
 	}
@@ -1113,81 +2307,71 @@ public final class StaticChunkWorld extends World {
 			newChunk.generate();
 			
 			oldChunk.removeEntity(entity);
-			final Collection<Player> oldPlayers = getNearbyPlayers(currentLoc);
-			final Collection<Player> newPlayers = getNearbyPlayers(newLoc);
 			newChunk.addEntity(entity);
 			
 			final EntityPacket destroyPacket = EntityPacket.constructDestroy(entity);
 			final EntityPacket createPacket = EntityPacket.constructCreate(entity);
+			final Player mover = Player.is(entity) ? ((PlayerEntity) entity).getPlayer() : null;
 			
+			//Players that only see the old chunk lose the entity, players that only see the new chunk gain it.
+			oldChunk.subscribers()
+			.filter(oP -> oP != mover && !newChunk.isSubscribed(oP))
+			.forEach(oP -> {
+				oP.sendPacket(destroyPacket);
+				if(mover != null)
+					mover.sendPacket(EntityPacket.constructDestroy(oP.getEntity()));
+			});
 			
+			newChunk.subscribers()
+			.filter(nP -> nP != mover && !oldChunk.isSubscribed(nP))
+			.forEach(nP -> {
+				nP.sendPacket(createPacket);
+				if(mover != null)
+					mover.sendPacket(EntityPacket.constructCreate(nP.getEntity()));
+			});
 			
-			if(entity instanceof PlayerEntity) {
+			if(mover != null) {
 				PlayerEntity pE = (PlayerEntity) entity;
-				Player player = pE.getPlayer();
 				int dx = newChunk.getCoordinate().getX() - oldChunk.getCoordinate().getX();
 				int dy = newChunk.getCoordinate().getY() - oldChunk.getCoordinate().getY();
 				
-				for(Player oP : oldPlayers) {
-					if(newPlayers.contains(oP)) continue;
-					oP.sendPacket(destroyPacket);
-					player.sendPacket(EntityPacket.constructDestroy(oP.getEntity()));
-				}
-				
-				for(Player nP : newPlayers) {
-					if(oldPlayers.contains(nP)) continue;
-					nP.sendPacket(createPacket);
-					player.sendPacket(EntityPacket.constructCreate(nP.getEntity()));
-				}
-				
-				/*if(dx != 0) {
-					for(int y=-1; y<2; ++y) {
-						sendDeleteChunk(checkGenerateChunk(shiftChunk(currentLoc, dx*-1, y)), player);
-						sendEntireChunk(shiftChunk(newLoc, dx, y), player);
-					}
-				}
-				if(dy != 0) {
-					for(int x=-1; x<2; ++x) {
-						sendDeleteChunk(checkGenerateChunk(shiftChunk(currentLoc, x, dy*-1)), player);
-						sendEntireChunk(shiftChunk(newLoc, x, dy), player);
-					}
-				}*/
-				
-			} else {
-				for(Player oP : oldPlayers) {
-					if(newPlayers.contains(oP)) continue;
-					oP.sendPacket(destroyPacket);
-				}
-				
-				for(Player nP : newPlayers) {
-					if(oldPlayers.contains(nP)) continue;
-					nP.sendPacket(createPacket);
-				}
+				prefetcher.onChunkChange(pE, newChunk, dx, dy, getViewDepth(pE.getViewingDistance()));
+				moveSubscriptions(mover, oldChunk, newChunk);
 			}
 		}
 		
+		entity.setLocation(newLoc);
+		
 		if(Player.is(entity)) {
-			PlayerEntity pE = (PlayerEntity) entity;
-			Player player = pE.getPlayer();
-			Collection<Tile> newTiles = getView(newLoc, pE.getViewingDistance());
-			Collection<Tile> oldTiles = getView(currentLoc, pE.getViewingDistance());
-			
-			Iterator<Tile> ni = newTiles.iterator();
-			while(ni.hasNext()) {
-				Tile t = ni.next();
-				if(oldTiles.contains(t))
-					oldTiles.remove(t);
-				else
-					sendCreateTile(player, t);
+			final ClientChunkCache cache = chunkCaches.get(entity.getID());
+			final PlayerEntity pE = (PlayerEntity) entity;
+			if(cache != null) {
+				if(!oldChunk.equals(newChunk))
+					streamChunks(pE, cache, newChunk);
+			} else if(isViewPaused(pE)) {
+				pauseView(pE, currentLoc);
+			} else {
+				updateView(pE, currentLoc, newLoc, false);
 			}
-			
-			oldTiles.forEach(t -> sendDestroyTile(player, t));
 		}
 		
-		entity.setLocation(newLocation);
 		return this;
 	}
 	
+	/**
+	 * Moves the subscriptions of a player that crossed from one chunk into another.
+	 * Only the chunks at the edges of the two neighbourhoods change.
+	 */
+	private void moveSubscriptions(final Player player, final Chunk oldChunk, final Chunk newChunk) {
+		final int depth = getChunkDepth();
+		surroundingChunks(oldChunk.getPlane(), oldChunk.chunkX(), oldChunk.chunkY(), depth)
+		.filter(c -> !c.isWithin(newChunk, depth))
+		.forEach(c -> c.unsubscribe(player));
+		surroundingChunks(newChunk.getPlane(), newChunk.chunkX(), newChunk.chunkY(), depth)
+		.filter(c -> !c.isWithin(oldChunk, depth))
+		.forEach(c -> c.subscribe(player));
+	}
+	
 	private static void sendCreateTile(Player player, Tile tile) {
 		player.sendPacket(TilePacket.constructCreate(tile));
 	}
@@ -1197,17 +2381,28 @@ public final class StaticChunkWorld extends World {
 	}
 	
 	private static void sendCreateChunk(final Chunk chunk, final Player player) {
-		player.sendPacket(TilePacket.constructCreate(chunk.tiles));
+		player.sendPacket(TilePacket.constructCreate(chunk.getTileArray()));
 	}
 	
 	private static void sendDeleteChunk(final Chunk chunk, final Player player) {
-		player.sendPacket(TilePacket.constructDestroy(chunk.tiles));
+		player.sendPacket(TilePacket.constructDestroy(chunk.getTileArray()));
 	}
 	
 	protected StaticChunkWorld(final String name, final int chunkSize, final int chunkDepth, final WorldGenerator generator) {
 		super(name, generator);
+		Utils.assertArg(chunkSize < 1, "Cannot create a StaticChunkWorld with a chunk size less than 1.");
 		this.chunkSize = chunkSize;
 		this.chunkDepth = chunkDepth;
+		chunkHalf = (chunkSize - 1) / 2;
+		if(Integer.bitCount(chunkSize) == 1) {
+			chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+			chunkMask = chunkSize - 1;
+		} else {
+			chunkShift = -1;
+			chunkMask = -1;
+		}
+		generationService = new ChunkGenerationService(name);
+		viewRing = new ViewRing(chunkSize, chunkHalf);
 	}
 	
 	protected StaticChunkWorld(final String name, final int chunkSize, final WorldGenerator generator) {
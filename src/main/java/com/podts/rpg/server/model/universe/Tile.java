@@ -49,8 +49,10 @@ public class Tile extends Spatial implements Shiftable<Tile>, Region, Registerab
 	
 	final Tile doAddTileListener(TileListener handler) {
 		onAddTileListener();
-		if(tileListeners.add(handler))
+		if(tileListeners.add(handler)) {
 			handler.onAdd(this);
+			onListenersChange();
+		}
 		return this;
 	}
 	
@@ -65,6 +67,7 @@ public class Tile extends Spatial implements Shiftable<Tile>, Region, Registerab
 		if(tileListeners.remove(listener)) {
 			listener.onRemove(this);
 			onRemoveTileListener();
+			onListenersChange();
 		}
 		return this;
 	}
@@ -112,6 +115,7 @@ public class Tile extends Spatial implements Shiftable<Tile>, Region, Registerab
 		onAddRegionListener();
 		for(RegionListener l : listeners)
 			regionListeners.add(l);
+		onListenersChange();
 		return this;
 	}
 	
@@ -127,9 +131,26 @@ public class Tile extends Spatial implements Shiftable<Tile>, Region, Registerab
 		for(RegionListener l : listeners)
 			regionListeners.remove(l);
 		onRemoveRegionListener();
+		onListenersChange();
 		return this;
 	}
 	
+	/**
+	 * Returns true if this Tile has any {@link TileListener TileListeners} or {@link RegionListener RegionListeners}.
+	 * @return true if this Tile has any listeners, false otherwise.
+	 */
+	final boolean hasListeners() {
+		return !noTileListeners() || !noRegionListeners();
+	}
+	
+	/**
+	 * Called after a listener has been added to or removed from this Tile.
+	 * Spaces that do not keep Tile instances around can use this to hold on to Tiles that have listeners.
+	 */
+	void onListenersChange() {
+		
+	}
+	
 	private boolean noRegionListeners() {
 		return regionListeners == null;
 	}
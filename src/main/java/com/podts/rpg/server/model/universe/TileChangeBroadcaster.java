@@ -0,0 +1,190 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.podts.rpg.server.Player;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.ViewRing.RectangleConsumer;
+import com.podts.rpg.server.model.universe.region.RectangularRegion.Corner;
+import com.podts.rpg.server.network.packet.TilePacket;
+
+/**
+ * Sends the tiles that changed in a {@link StaticChunkWorld} to the players near them once per tick.
+ * Chunks collect the positions of their changed tiles and are queued once when the first tile changes,
+ * so the players near a chunk are looked up once per tick no matter how many of its tiles changed.
+ * The changed tiles of a chunk are sent as a few rectangles instead of a packet per tile.
+ * Players whose clients are {@link Player#isSaturated() saturated} are skipped, they are sent their view again once they caught up.
+ */
+final class TileChangeBroadcaster {
+	
+	static final long DEFAULT_PERIOD = TimeUnit.MILLISECONDS.toNanos(50);
+	
+	private final StaticChunkWorld world;
+	private final Queue<Chunk> queue = new ConcurrentLinkedQueue<>();
+	private ScheduledExecutorService executor;
+	
+	/**
+	 * Queues the given chunk to have its changed tiles sent with the next tick.
+	 * @param chunk - The chunk that has its first changed tile since the last tick.
+	 */
+	void enqueue(final Chunk chunk) {
+		queue.add(chunk);
+	}
+	
+	int getQueuedCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * Sends the changed tiles of every queued chunk to the players near it.
+	 * @return The number of packets that were sent.
+	 */
+	synchronized int flush() {
+		int sent = 0;
+		Chunk chunk;
+		while((chunk = queue.poll()) != null) {
+			final BitSet changed = chunk.takeChangedTiles();
+			if(changed == null || chunk.isUnloaded())
+				continue;
+			final List<Player> players = new ArrayList<>();
+			chunk.subscribers().forEach(player -> {
+				if(player.isSaturated())
+					world.skipTiles(player);
+				else
+					players.add(player);
+			});
+			if(players.isEmpty()) {
+				world.refreshChunkCaches(chunk);
+				continue;
+			}
+			final List<TilePacket> packets = new ArrayList<>();
+			final Chunk source = chunk;
+			final Location topLeft = chunk.getCorner(Corner.TOP_LEFT);
+			rectangles(changed, chunk.chunkSize(), (left, top, width, height) -> {
+				final Tile[][] tiles = new Tile[width][height];
+				source.copyTiles(tiles, topLeft.getX() + left, topLeft.getY() + top);
+				packets.add(TilePacket.constructCreate(tiles));
+			});
+			for(Player player : players) {
+				for(TilePacket packet : packets) {
+					player.sendPacket(packet);
+				}
+			}
+			sent += packets.size() * players.size();
+			world.refreshChunkCaches(chunk);
+		}
+		return sent;
+	}
+	
+	/**
+	 * Covers the set positions of a square grid with rectangles.
+	 * If the changes fill most of their bounding box the whole box is a single rectangle,
+	 * otherwise each row is split into runs and runs that line up with the run above are merged.
+	 * @param changed - The set positions indexed row by row.
+	 * @param size - The width and height of the grid.
+	 * @param consumer - Receives each rectangle relative to the top left of the grid.
+	 */
+	static void rectangles(final BitSet changed, final int size, final RectangleConsumer consumer) {
+		final int first = changed.nextSetBit(0);
+		if(first < 0)
+			return;
+		final int top = first / size, bottom = (changed.length() - 1) / size + 1;
+		int left = size, right = -1;
+		for(int y=top; y<bottom; ++y) {
+			final int start = changed.nextSetBit(y * size);
+			if(start < 0 || start >= (y + 1) * size)
+				continue;
+			left = Math.min(left, start - y * size);
+			right = Math.max(right, changed.previousSetBit((y + 1) * size - 1) - y * size);
+		}
+		final int boxArea = (right - left + 1) * (bottom - top);
+		if(boxArea <= changed.cardinality() * 2) {
+			consumer.accept(left, top, right - left + 1, bottom - top);
+			return;
+		}
+		//Each open rectangle is {left, right, top}.
+		List<int[]> open = new ArrayList<>();
+		List<int[]> next = new ArrayList<>();
+		for(int y=top; y<bottom; ++y) {
+			final int rowStart = y * size, rowEnd = rowStart + size;
+			int start = changed.nextSetBit(rowStart);
+			while(start >= 0 && start < rowEnd) {
+				final int end = Math.min(changed.nextClearBit(start), rowEnd) - 1;
+				next.add(extend(open, start - rowStart, end - rowStart, y));
+				start = changed.nextSetBit(end + 1);
+			}
+			close(open, y, consumer);
+			final List<int[]> swap = open;
+			open = next;
+			next = swap;
+		}
+		close(open, bottom, consumer);
+	}
+	
+	private static int[] extend(final List<int[]> open, final int start, final int end, final int y) {
+		for(int i=0; i<open.size(); ++i) {
+			final int[] rectangle = open.get(i);
+			if(rectangle[0] == start && rectangle[1] == end) {
+				open.remove(i);
+				return rectangle;
+			}
+		}
+		return new int[] {start, end, y};
+	}
+	
+	private static void close(final List<int[]> open, final int y, final RectangleConsumer consumer) {
+		for(int[] rectangle : open) {
+			consumer.accept(rectangle[0], rectangle[2], rectangle[1] - rectangle[0] + 1, y - rectangle[2]);
+		}
+		open.clear();
+	}
+	
+	synchronized void start() {
+		if(executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, world.getName() + " Tile Broadcaster");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleAtFixedRate(() -> {
+			try {
+				flush();
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}, DEFAULT_PERIOD, DEFAULT_PERIOD, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Stops broadcasting in the background and sends the changes that are still queued.
+	 */
+	void stop() {
+		final ScheduledExecutorService executor;
+		synchronized(this) {
+			executor = this.executor;
+			this.executor = null;
+		}
+		if(executor == null)
+			return;
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+	
+	TileChangeBroadcaster(final StaticChunkWorld world) {
+		this.world = world;
+	}
+	
+}
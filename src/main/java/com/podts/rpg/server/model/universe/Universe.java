@@ -1,10 +1,19 @@
 package com.podts.rpg.server.model.universe;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.stream.Stream;
 
+import com.podts.rpg.server.model.universe.generators.PerlinNoiseGenerator;
 import com.podts.rpg.server.model.universe.region.PollableRegion;
+import com.podts.rpg.server.model.universe.storage.RegionFileStorage;
 
 public final class Universe {
 	
@@ -16,20 +25,45 @@ public final class Universe {
 		return instance;
 	}
 	
+	/**
+	 * The file inside the directory of a saved world that holds its settings.
+	 */
+	public static final String WORLD_PROPERTIES = "world.properties";
+	private static final String SEED_PROPERTY = "seed";
+	
 	private final Map<String,World> worlds = new HashMap<String,World>();
 	
 	private World defaultWorld;
+	private Path worldDirectory;
 	
 	public World getDefaultWorld() {
 		return defaultWorld;
 	}
 	
+	/**
+	 * @return The directory that the chunks of every world are saved in, or null if worlds are not saved.
+	 */
+	public synchronized Path getWorldDirectory() {
+		return worldDirectory;
+	}
+	
+	/**
+	 * Sets the directory that worlds created from now on save their chunks in, each world in a directory of its own name.
+	 * @param directory - The directory, or null to keep the chunks of new worlds only in memory.
+	 * @return This universe.
+	 */
+	public synchronized Universe setWorldDirectory(Path directory) {
+		worldDirectory = directory;
+		return this;
+	}
+	
 	public synchronized World getWorld(String name) {
 		return worlds.get(name);
 	}
 	
 	/**
 	 * Creates a new world with a given name.
+	 * The world saves its chunks in the {@link #getWorldDirectory() world directory} if there is one.
 	 * @param name - The name of the newly created world.
 	 * @param generator - The WorldGenerator that this world will use to generate new Tiles.
 	 * @return The new world.
@@ -41,12 +75,67 @@ public final class Universe {
 		final World other = getWorld(name);
 		if(other != null) throw new WorldAlreadyExistsException(other);
 		
-		final World result = new StaticChunkWorld(name, generator);
+		final StaticChunkWorld result = new StaticChunkWorld(name, generator);
+		if(worldDirectory != null)
+			result.setStorage(new RegionFileStorage(worldDirectory.resolve(name)));
 		worlds.put(result.getName(), result);
 		if(defaultWorld == null) defaultWorld = result;
+		result.onCreate();
 		return result;
 	}
 	
+	/**
+	 * Creates a new world with a given name that generates Perlin noise terrain from the given seed.
+	 * Worlds created with the same seed generate the same tiles.
+	 * A world that was saved before keeps the {@link #loadSeed(String, long) seed it was first created with}.
+	 * @param name - The name of the newly created world.
+	 * @param seed - The seed of the terrain if the world has not been saved before.
+	 * @return The new world.
+	 * @throws WorldAlreadyExistsException When there is already a world that has the given name.
+	 */
+	public World createWorld(String name, long seed) throws WorldAlreadyExistsException {
+		return createWorld(name, new PerlinNoiseGenerator(loadSeed(name, seed)));
+	}
+	
+	/**
+	 * Returns the seed that the saved world with the given name was created with.
+	 * If the world has not been saved before, the given seed is saved with it so the world generates the same terrain when it is opened again.
+	 * Without a {@link #getWorldDirectory() world directory} the given seed is returned.
+	 * @param name - The name of the world.
+	 * @param seed - The seed to use if the world is new.
+	 * @return The seed of the world.
+	 * @throws UncheckedIOException If the saved seed could not be read.
+	 */
+	public synchronized long loadSeed(String name, long seed) {
+		if(name == null) throw new IllegalArgumentException("Cannot load the seed of a world with null name.");
+		if(worldDirectory == null)
+			return seed;
+		final Path file = worldDirectory.resolve(name).resolve(WORLD_PROPERTIES);
+		final Properties properties = new Properties();
+		if(Files.exists(file)) {
+			try(InputStream in = Files.newInputStream(file)) {
+				properties.load(in);
+				final String saved = properties.getProperty(SEED_PROPERTY);
+				if(saved != null)
+					return Long.parseLong(saved.trim());
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read the seed of " + name + ".", e);
+			} catch (NumberFormatException e) {
+				throw new IllegalStateException("The saved seed of " + name + " is not a number.", e);
+			}
+		}
+		properties.setProperty(SEED_PROPERTY, Long.toString(seed));
+		try {
+			Files.createDirectories(file.getParent());
+			try(OutputStream out = Files.newOutputStream(file)) {
+				properties.store(out, name);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return seed;
+	}
+	
 	/**
 	 * Renames the given world.
 	 * @param world - The World to be renamed.
@@ -71,10 +160,20 @@ public final class Universe {
 	}
 	
 	public synchronized final Universe deleteWorld(World world) {
-		worlds.remove(world.getName());
+		if(worlds.remove(world.getName()) != null)
+			world.onDelete();
 		return this;
 	}
 	
+	/**
+	 * Deletes every world so that they can stop their background work.
+	 */
+	public synchronized final void shutdown() {
+		worlds.values().forEach(World::onDelete);
+		worlds.clear();
+		defaultWorld = null;
+	}
+	
 	public Stream<World> worlds() {
 		return worlds.values().stream();
 	}
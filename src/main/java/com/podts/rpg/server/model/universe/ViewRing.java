@@ -0,0 +1,175 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the tiles that enter or leave the circular view of a player without visiting the whole view.
+ * Every row of a circular view is a single span of tiles, so when the center moves only the ends of each row change.
+ * The changed tiles are merged into rectangles that never cross the edge of a chunk,
+ * which lets each rectangle be copied from a single chunk and sent as one group packet.
+ */
+final class ViewRing {
+	
+	/**
+	 * Receives a rectangle of tiles.
+	 */
+	@FunctionalInterface
+	interface RectangleConsumer {
+		void accept(int left, int top, int width, int height);
+	}
+	
+	private final int chunkSize, chunkHalf;
+	
+	/**
+	 * Returns the largest horizontal distance from the center of a view that is still in view on the given row.
+	 * @param dy - The vertical distance of the row from the center.
+	 * @param distance - The viewing distance, a negative distance is an empty view.
+	 * @return The half width of the row or -1 if no tile of the row is in view.
+	 */
+	static int halfWidth(final int dy, final double distance) {
+		if(distance < 0 || Math.abs(dy) > distance)
+			return -1;
+		int result = (int) Math.sqrt(distance * distance - (double) dy * dy);
+		//Match Locatable#isInRange exactly, the square root above can be off by one.
+		while(Location.distance(0, 0, result + 1, dy) <= distance)
+			++result;
+		while(result >= 0 && Location.distance(0, 0, result, dy) > distance)
+			--result;
+		return result;
+	}
+	
+	/**
+	 * Finds every tile that is in view from the second center but was not in view from the first center.
+	 * Passing the centers in the other order finds the tiles that left the view.
+	 * @param fromX - The x position of the previous center.
+	 * @param fromY - The y position of the previous center.
+	 * @param fromDistance - The previous viewing distance, negative if nothing was in view.
+	 * @param toX - The x position of the new center.
+	 * @param toY - The y position of the new center.
+	 * @param toDistance - The new viewing distance.
+	 * @param consumer - Receives the rectangles of tiles that came into view.
+	 */
+	void changes(final int fromX, final int fromY, final double fromDistance,
+			final int toX, final int toY, final double toDistance, final RectangleConsumer consumer) {
+		final int reach = (int) Math.floor(toDistance);
+		scan(fromX, fromY, fromDistance, toX, toY, toDistance,
+				toX - reach, toY - reach, toX + reach, toY + reach, consumer);
+	}
+	
+	/**
+	 * Finds every tile that is in view and inside the given bounds.
+	 * @param x - The x position of the center of the view.
+	 * @param y - The y position of the center of the view.
+	 * @param distance - The viewing distance.
+	 * @param left - The left edge of the bounds.
+	 * @param top - The top edge of the bounds.
+	 * @param width - The width of the bounds.
+	 * @param height - The height of the bounds.
+	 * @param consumer - Receives the rectangles of tiles that are in view.
+	 */
+	void within(final int x, final int y, final double distance,
+			final int left, final int top, final int width, final int height, final RectangleConsumer consumer) {
+		scan(0, 0, -1, x, y, distance, left, top, left + width - 1, top + height - 1, consumer);
+	}
+	
+	private void scan(final int fromX, final int fromY, final double fromDistance,
+			final int toX, final int toY, final double toDistance,
+			final int minX, final int minY, final int maxX, final int maxY, final RectangleConsumer consumer) {
+		//Each open rectangle is {left, right, top}, it is extended while the next row has the same span.
+		List<int[]> open = new ArrayList<>();
+		List<int[]> next = new ArrayList<>();
+		final int[] spans = new int[4];
+		for(int y=minY; y<=maxY; ++y) {
+			if(isChunkEdge(y)) {
+				close(open, y, consumer);
+			}
+			final int spanCount = spans(fromX, fromY, fromDistance, toX, toY, toDistance, y, minX, maxX, spans);
+			for(int s=0; s<spanCount; s+=2) {
+				//Split the span where it crosses into another chunk.
+				int start = spans[s];
+				final int end = spans[s + 1];
+				while(start <= end) {
+					final int stop = Math.min(end, nextChunkEdge(start) - 1);
+					next.add(extend(open, start, stop, y));
+					start = stop + 1;
+				}
+			}
+			close(open, y, consumer);
+			final List<int[]> swap = open;
+			open = next;
+			next = swap;
+		}
+		close(open, maxY + 1, consumer);
+	}
+	
+	/**
+	 * Fills the spans of the given row that are in the new view but not in the previous view.
+	 * @return The number of span bounds that were written, two for every span.
+	 */
+	private static int spans(final int fromX, final int fromY, final double fromDistance,
+			final int toX, final int toY, final double toDistance,
+			final int y, final int minX, final int maxX, final int[] spans) {
+		final int toWidth = halfWidth(y - toY, toDistance);
+		if(toWidth < 0)
+			return 0;
+		final int start = Math.max(minX, toX - toWidth), end = Math.min(maxX, toX + toWidth);
+		if(start > end)
+			return 0;
+		final int fromWidth = halfWidth(y - fromY, fromDistance);
+		int count = 0;
+		if(fromWidth < 0) {
+			spans[count++] = start;
+			spans[count++] = end;
+			return count;
+		}
+		final int seenStart = fromX - fromWidth, seenEnd = fromX + fromWidth;
+		if(start < seenStart) {
+			spans[count++] = start;
+			spans[count++] = Math.min(end, seenStart - 1);
+		}
+		if(end > seenEnd) {
+			spans[count++] = Math.max(start, seenEnd + 1);
+			spans[count++] = end;
+		}
+		return count;
+	}
+	
+	/**
+	 * Removes and returns the open rectangle that has the same span, or starts a new rectangle at the given row.
+	 */
+	private static int[] extend(final List<int[]> open, final int start, final int end, final int y) {
+		for(int i=0; i<open.size(); ++i) {
+			final int[] rectangle = open.get(i);
+			if(rectangle[0] == start && rectangle[1] == end) {
+				open.remove(i);
+				return rectangle;
+			}
+		}
+		return new int[] {start, end, y};
+	}
+	
+	private static void close(final List<int[]> open, final int y, final RectangleConsumer consumer) {
+		for(int[] rectangle : open) {
+			consumer.accept(rectangle[0], rectangle[2], rectangle[1] - rectangle[0] + 1, y - rectangle[2]);
+		}
+		open.clear();
+	}
+	
+	private boolean isChunkEdge(final int v) {
+		return Math.floorMod(v + chunkHalf, chunkSize) == 0;
+	}
+	
+	/**
+	 * Returns the first position after the given position that starts a new chunk.
+	 */
+	private int nextChunkEdge(final int v) {
+		return v + chunkSize - Math.floorMod(v + chunkHalf, chunkSize);
+	}
+	
+	ViewRing(final int chunkSize, final int chunkHalf) {
+		this.chunkSize = chunkSize;
+		this.chunkHalf = chunkHalf;
+	}
+	
+}
@@ -12,7 +12,11 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.podts.rpg.server.GameEngine;
+import com.podts.rpg.server.GameEngine.TickPhase;
 import com.podts.rpg.server.Player;
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
 import com.podts.rpg.server.Server;
 import com.podts.rpg.server.Utils;
 import com.podts.rpg.server.model.entity.PlayerEntity;
@@ -59,6 +63,31 @@ public abstract class World extends Space {
 	
 	public abstract Collection<Player> getPlayers();
 	
+	/**
+	 * Called by the {@link Universe} after this World has been created and added to it.
+	 */
+	protected void onCreate() {
+		
+	}
+	
+	/**
+	 * Called by the {@link Universe} after this World has been deleted or when the Universe shuts down.
+	 * Any background work of this World should be stopped.
+	 */
+	protected void onDelete() {
+		
+	}
+	
+	/**
+	 * Called once the client of a player in this World caught up after it was {@link Player#isSaturated() saturated}.
+	 * Worlds that stop streaming tiles to saturated clients send what the client missed.
+	 * @param player - The player whose client caught up.
+	 * @param dropped - If tiles or chunks that were already sent to the client were dropped, so its whole view has to be sent again.
+	 */
+	public void resumeStreaming(Player player, boolean dropped) {
+		
+	}
+	
 	@Override
 	public Stream<Player> players() {
 		return getPlayers().stream();
@@ -89,6 +118,21 @@ public abstract class World extends Space {
 	
 	protected abstract void doGetTiles(Tile[][] tiles, Location topLeft);
 	
+	/**
+	 * Returns a selection of every Tile in the rectangle with the given top left point and size.
+	 * The tiles are fetched with a single call to {@link #getTiles(Tile[][], Location)}.
+	 * @param topLeft - The top left point of the rectangle.
+	 * @param width - The width of the rectangle.
+	 * @param height - The height of the rectangle.
+	 * @return The selection of the tiles in the rectangle.
+	 */
+	public final RectangleTileSelction selectTiles(Location topLeft, int width, int height) {
+		Utils.assertArg(width < 1 || height < 1, "Cannot select Tiles with a width or height less than 1.");
+		final Tile[][] tiles = new Tile[width][height];
+		getTiles(tiles, topLeft);
+		return new RectangleTileSelction(tiles);
+	}
+	
 	public final Collection<Entity> getNearbyEntities(HasLocation l, double distance) {
 		return nearbyEntities(l, distance)
 				.collect(Collectors.toSet());
@@ -134,7 +178,7 @@ public abstract class World extends Space {
 			else
 				sendToNearbyPlayers(e, EntityPacket.constructCreate(e));
 		}
-			
+		
 		return result;
 	}
 	
@@ -249,7 +293,9 @@ public abstract class World extends Space {
 			fireRegionEnter(r, entity, newLoc, type);
 		}
 		
+		final long start = Profiler.start();
 		doMoveEntity(entity, newLoc, type);
+		Profiler.record(Metric.MOVE, start);
 		
 		//Update entity position to all viewers.
 		sendToNearbyPlayers(entity, EntityPacket.constructUpdate(entity));
@@ -319,28 +365,47 @@ public abstract class World extends Space {
 		return getName();
 	}
 	
+	/*
+	 * Regions that monitor entities are updated right away.
+	 * While the game engine ticks, listeners are notified on the tick thread in the region phase,
+	 * after the packet or task that moved the entity, in the order the entities moved.
+	 * Otherwise listeners are notified right away on the calling thread.
+	 */
+	
 	private static final void fireRegionEnter(Region r, Entity entity, Location newLocation, MoveType type) {
 		if(r instanceof MonitoringRegion) {
 			((MonitoringRegion) r).addEntity(entity);
 		}
-		for(RegionListener l : r.getRegionListeners()) {
-			l.onEntityEnter(r, entity, type);
-		}
+		GameEngine.runInPhase(TickPhase.REGIONS, () -> {
+			final long start = Profiler.start();
+			for(RegionListener l : r.getRegionListeners()) {
+				l.onEntityEnter(r, entity, type);
+			}
+			Profiler.record(Metric.REGION_EVENT, start);
+		});
 	}
 	
 	private static final void fireRegionMove(Region r, Entity entity, Location newLocation, MoveType type) {
-		for(RegionListener l : r.getRegionListeners()) {
-			l.onEntityMove(r, entity, type);
-		}
+		GameEngine.runInPhase(TickPhase.REGIONS, () -> {
+			final long start = Profiler.start();
+			for(RegionListener l : r.getRegionListeners()) {
+				l.onEntityMove(r, entity, type);
+			}
+			Profiler.record(Metric.REGION_EVENT, start);
+		});
 	}
 	
 	private static final void fireRegionLeave(Region r, Entity entity, Location newLocation, MoveType type) {
 		if(r instanceof MonitoringRegion) {
 			((MonitoringRegion) r).removeEntity(entity);
 		}
-		for(RegionListener l : r.getRegionListeners()) {
-			l.onEntityLeave(r, entity, type);
-		}
+		GameEngine.runInPhase(TickPhase.REGIONS, () -> {
+			final long start = Profiler.start();
+			for(RegionListener l : r.getRegionListeners()) {
+				l.onEntityLeave(r, entity, type);
+			}
+			Profiler.record(Metric.REGION_EVENT, start);
+		});
 	}
 	
 	private final class RegionChangeListener implements DynamicRegionListener {
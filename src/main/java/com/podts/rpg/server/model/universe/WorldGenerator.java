@@ -41,6 +41,30 @@ public abstract class WorldGenerator extends TileGenerator {
 		return this;
 	}
 	
+	/**
+	 * Generate the types of the tiles in a rectangular region without creating any Locations or elements.
+	 * Each type is stored as its ordinal, row by row, so the type of the tile at (x + i, y + j) is stored at out[j * width + i].
+	 * Generators that need a Location or create custom elements do not support this and the tiles have to be generated one at a time.
+	 * @param x - The top left X position of the rectangle.
+	 * @param y - The top left Y position of the rectangle.
+	 * @param z - The z position of the tiles.
+	 * @param width - The width of the rectangle.
+	 * @param height - The height of the rectangle.
+	 * @param out - The array to store the generated types, this must have room for width * height types.
+	 * @return true if the types were generated, false if this generator does not support generating types.
+	 */
+	public final boolean generateRect(int x, int y, int z, int width, int height, byte[] out) {
+		Utils.assertNull(out, "Cannot generate Tiles with a null array.");
+		Utils.assertArg(width <= 0 || height <= 0, "Cannot generate Tiles in a rectangle of size 0.");
+		Utils.assertArg(out.length < width * height, "Cannot generate Tiles with an array smaller than the rectangle.");
+		
+		return doGenerateRect(x, y, z, width, height, out);
+	}
+	
+	protected boolean doGenerateRect(int x, int y, int z, int width, int height, byte[] out) {
+		return false;
+	}
+	
 	public WorldGenerator() {
 		
 	}
@@ -1,5 +1,7 @@
 package com.podts.rpg.server.model.universe.generators;
 
+import java.util.Arrays;
+
 import com.podts.rpg.server.model.universe.Location;
 import com.podts.rpg.server.model.universe.TileElement;
 import com.podts.rpg.server.model.universe.WorldGenerator;
@@ -22,6 +24,12 @@ public final class FillGenerator extends WorldGenerator {
 		return constructElement(type);
 	}
 	
+	@Override
+	protected boolean doGenerateRect(int x, int y, int z, int width, int height, byte[] out) {
+		Arrays.fill(out, 0, width * height, (byte) type.ordinal());
+		return true;
+	}
+	
 	public FillGenerator(TileType type) {
 		this.type = type;
 	}
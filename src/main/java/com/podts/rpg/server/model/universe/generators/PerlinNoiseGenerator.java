@@ -1,5 +1,7 @@
 package com.podts.rpg.server.model.universe.generators;
 
+import java.util.Arrays;
+
 import com.podts.rpg.server.model.universe.Location;
 import com.podts.rpg.server.model.universe.TileElement;
 import com.podts.rpg.server.model.universe.WorldGenerator;
@@ -7,24 +9,144 @@ import com.podts.rpg.server.model.universe.TileElement.TileType;
 
 public final class PerlinNoiseGenerator extends WorldGenerator {
 	
-	private final int seed;
+	private final long seed;
+	private final int noiseSeed;
+	
+	/**
+	 * @return The seed that this generator was created with.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Creates a generator that always generates the same tiles for the same seed.
+	 * @param seed - The seed.
+	 */
+	public PerlinNoiseGenerator(long seed) {
+		this.seed = seed;
+		//The noise multiplies by the seed, so a seed of 0 would make every row identical.
+		final int folded = (int) (seed ^ (seed >>> 32));
+		noiseSeed = folded == 0 ? 1 : folded;
+	}
 	
+	/**
+	 * Creates a generator with a seed based on the current time.
+	 */
 	public PerlinNoiseGenerator() {
-		seed = (int) System.currentTimeMillis();
+		this(System.currentTimeMillis());
 	}
 	
+	private static final double SCALE = 150d;
+	private static final int OCTAVES = 5;
+	
 	@Override
 	public TileElement doGenerateTile(Location point) {
-		TileType type = TileType.VOID;
-		int val = noise(point.getX()/150d, point.getY()/150d, 5, seed);
-		if(val >= 88) {
-			type = TileType.GRASS;
-		} else if(val >= 85) {
-			type = TileType.SAND;
-		} else {
-			type = TileType.WATER;
+		return constructElement(getType(noise(point.getX()/SCALE, point.getY()/SCALE, OCTAVES, noiseSeed)));
+	}
+	
+	@Override
+	protected boolean doGenerateRect(int x, int y, int z, int width, int height, byte[] out) {
+		final int[] sx = new int[width];
+		for(int i=0; i<width; ++i) {
+			sx[i] = (int)(((x + i)/SCALE)*256);
+		}
+		final int[] values = new int[width];
+		for(int j=0; j<height; ++j) {
+			noiseRow(sx, (int)(((y + j)/SCALE)*256), OCTAVES, noiseSeed, values);
+			final int row = j * width;
+			for(int i=0; i<width; ++i) {
+				out[row + i] = (byte) getType(values[i]).ordinal();
+			}
+		}
+		return true;
+	}
+	
+	private static TileType getType(int val) {
+		if(val >= 88)
+			return TileType.GRASS;
+		if(val >= 85)
+			return TileType.SAND;
+		return TileType.WATER;
+	}
+	
+	private static int hash(int n) {
+		n = (n<<13)^n;
+		return n * (n * n * 15731 + 789221) + 1376312589;
+	}
+	
+	/**
+	 * Computes the same values as {@link #noise(double, double, int, int)} for a row of positions.
+	 * Neighbouring positions share lattice cells, so the corners of a cell are only hashed
+	 * when the row enters a new cell instead of once for every position.
+	 * @param sx - The scaled x of every position in the row, the x passed to noise times 256.
+	 * @param sy - The scaled y of the row.
+	 * @param nbOctave - The number of octaves.
+	 * @param seed - The seed.
+	 * @param result - Receives the noise of every position in the row.
+	 */
+	static void noiseRow(int[] sx, int sy, int nbOctave, int seed, int[] result) {
+		Arrays.fill(result, 0, sx.length, 0);
+		for(int octave=nbOctave; octave!=0; --octave) {
+			final int shift = nbOctave - octave;
+			final int syo = sy<<shift;
+			final int bY = syo&0xFF;
+			final int s1 = (syo>>8)*seed;
+			final int s2 = s1 + seed;
+			
+			final int sY1 = bY>>1;
+			final int sY3 = 128 - sY1;
+			final int bY2 = (bY*bY)>>8;
+			final int bY3 = (bY2*bY)>>8;
+			final int fY = 3*bY2 - 2*bY3;
+			
+			int cell = 0;
+			int grad1X = 0, grad1Y = 0, off1 = 0;
+			int grad2X = 0, grad2Y = 0, off2 = 0;
+			int grad3X = 0, grad3Y = 0, off3 = 0;
+			int grad4X = 0, grad4Y = 0, off4 = 0;
+			for(int i=0; i<sx.length; ++i) {
+				final int sxo = sx[i]<<shift;
+				final int sxp = sxo>>8;
+				if(i == 0 || sxp != cell) {
+					cell = sxp;
+					final int alt1 = hash(sxp + s1);
+					final int alt2 = hash(sxp + s1 + 1);
+					final int alt3 = hash(sxp + s2);
+					final int alt4 = hash(sxp + s2 + 1);
+					grad1X = (alt1&0xFF)-128;
+					grad1Y = ((alt1>>8)&0xFF)-128;
+					off1 = 16384+((alt1&0xFF0000)>>9);
+					grad2X = (alt2&0xFF)-128;
+					grad2Y = ((alt2>>8)&0xFF)-128;
+					off2 = 16384+((alt2&0xFF0000)>>9);
+					grad3X = (alt3&0xFF)-128;
+					grad3Y = ((alt3>>8)&0xFF)-128;
+					off3 = 16384+((alt3&0xFF0000)>>9);
+					grad4X = (alt4&0xFF)-128;
+					grad4Y = ((alt4>>8)&0xFF)-128;
+					off4 = 16384+((alt4&0xFF0000)>>9);
+				}
+				final int bX = sxo&0xFF;
+				final int sX1 = bX>>1;
+				final int sX2 = 128 - sX1;
+				final int alt1 = grad1X*sX1 + grad1Y*sY1 + off1;
+				final int alt2 = grad2X*sX2 + grad2Y*sY1 + off2;
+				final int alt3 = grad3X*sX1 + grad3Y*sY3 + off3;
+				final int alt4 = grad4X*sX2 + grad4Y*sY3 + off4;
+				
+				final int bX2 = (bX*bX)>>8;
+				final int bX3 = (bX2*bX)>>8;
+				final int fX = 3*bX2 - 2*bX3;
+				final int alt12 = alt1 - ((fX * (alt1-alt2)) >> 8);
+				final int alt34 = alt3 - ((fX * (alt3-alt4)) >> 8);
+				final int val = (alt12 - ((fY * (alt12-alt34)) >> 8)) * 256;
+				result[i] += val<<octave;
+			}
+		}
+		for(int i=0; i<sx.length; ++i) {
+			result[i] >>>= 16+nbOctave+1;
 		}
-		return constructElement(type);
 	}
 	
 	public static int noise(double x,double y,int nbOctave, int seed)
@@ -0,0 +1,51 @@
+package com.podts.rpg.server.model.universe.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Stores the data of chunks by their chunk coordinates.
+ * Implementations must be safe to use from multiple threads.
+ */
+public interface ChunkStorage extends Closeable {
+	
+	/**
+	 * Loads the data of the chunk at the given chunk coordinates.
+	 * @param x - The chunk x coordinate.
+	 * @param y - The chunk y coordinate.
+	 * @param z - The z coordinate of the chunks plane.
+	 * @return The data of the chunk or null if it has not been saved.
+	 * @throws IOException If the chunk could not be read.
+	 */
+	public byte[] load(int x, int y, int z) throws IOException;
+	
+	/**
+	 * Saves the data of the chunk at the given chunk coordinates, replacing any previously saved data.
+	 * @param x - The chunk x coordinate.
+	 * @param y - The chunk y coordinate.
+	 * @param z - The z coordinate of the chunks plane.
+	 * @param data - The data of the chunk.
+	 * @throws IOException If the chunk could not be written.
+	 */
+	public void save(int x, int y, int z, byte[] data) throws IOException;
+	
+	/**
+	 * Returns the region of the chunk at the given chunk coordinates.
+	 * Chunks of the same region are stored together, so saving them one after the other is faster.
+	 * By default every chunk of a plane is in the same region.
+	 * @param x - The chunk x coordinate.
+	 * @param y - The chunk y coordinate.
+	 * @param z - The z coordinate of the chunks plane.
+	 * @return The key of the region of the chunk.
+	 */
+	public default long regionOf(int x, int y, int z) {
+		return 0;
+	}
+	
+	/**
+	 * Forces all saved chunks to be written to the underlying device.
+	 * @throws IOException If the storage could not be flushed.
+	 */
+	public void flush() throws IOException;
+	
+}
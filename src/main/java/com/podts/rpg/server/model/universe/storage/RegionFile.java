@@ -0,0 +1,171 @@
+package com.podts.rpg.server.model.universe.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single file holding the data of a square of {@value #SIZE} by {@value #SIZE} chunks.
+ * <p>
+ * The file starts with an offset table that holds the first sector and the length of every chunk,
+ * followed by the chunk data which is stored in sectors of {@value #SECTOR_SIZE} bytes.
+ * The offset table is memory mapped and reading a chunk is a single positioned read.
+ * </p>
+ * <p>
+ * Chunks are never overwritten in place, every write goes to free sectors and the offset table keeps pointing
+ * at the previous data until the next {@link #flush()}.
+ * A flush first forces the data to disk, then updates and forces the offset table and only then frees the sectors
+ * of the previous data, so a crash at any point leaves every chunk at either its old or its new data.
+ * Freed sectors are reused by later writes, so the file only grows to hold what is actually stored.
+ * </p>
+ */
+final class RegionFile implements Closeable {
+	
+	static final int SHIFT = 5;
+	static final int SIZE = 1 << SHIFT;
+	static final int MASK = SIZE - 1;
+	
+	static final int SECTOR_SIZE = 4096;
+	private static final int ENTRY_SIZE = 8;
+	private static final int HEADER_SECTORS = (SIZE * SIZE * ENTRY_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+	
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final BitSet usedSectors = new BitSet();
+	
+	/**
+	 * Sector and length of every chunk that was written since the last flush keyed by its offset table entry.
+	 * The offset table still points at the previous data of these chunks.
+	 */
+	private final Map<Integer,int[]> pending = new HashMap<>();
+	
+	private static int entry(int x, int y) {
+		return ((y & MASK) * SIZE + (x & MASK)) * ENTRY_SIZE;
+	}
+	
+	private static int sectorsFor(int length) {
+		return Math.max(1, (length + SECTOR_SIZE - 1) / SECTOR_SIZE);
+	}
+	
+	/**
+	 * Finds and marks the first run of free sectors that is long enough.
+	 * @param count - The number of sectors.
+	 * @return The first sector of the run.
+	 */
+	private int allocate(int count) {
+		int start = usedSectors.nextClearBit(HEADER_SECTORS);
+		int used;
+		while((used = usedSectors.nextSetBit(start)) != -1 && used < start + count)
+			start = usedSectors.nextClearBit(used);
+		usedSectors.set(start, start + count);
+		return start;
+	}
+	
+	private void release(int sector, int length) {
+		usedSectors.clear(sector, sector + sectorsFor(length));
+	}
+	
+	/**
+	 * Reads the data of the chunk with the given chunk coordinates.
+	 * Only the lowest {@value #SHIFT} bits of the coordinates are used.
+	 * @param x - The chunk x coordinate.
+	 * @param y - The chunk y coordinate.
+	 * @return The data of the chunk or null if there is none.
+	 * @throws IOException If the data could not be read.
+	 */
+	synchronized byte[] read(int x, int y) throws IOException {
+		final int entry = entry(x, y);
+		final int[] written = pending.get(entry);
+		final int sector = written == null ? header.getInt(entry) : written[0];
+		final int length = written == null ? header.getInt(entry + 4) : written[1];
+		if(sector == 0)
+			return null;
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		final long position = (long) sector * SECTOR_SIZE;
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("Region file ended inside of chunk " + x + ", " + y);
+		}
+		return buffer.array();
+	}
+	
+	/**
+	 * Writes the data of the chunk with the given chunk coordinates.
+	 * The data is only used after a restart once it has been {@link #flush() flushed}.
+	 * Only the lowest {@value #SHIFT} bits of the coordinates are used.
+	 * @param x - The chunk x coordinate.
+	 * @param y - The chunk y coordinate.
+	 * @param data - The data of the chunk.
+	 * @throws IOException If the data could not be written.
+	 */
+	synchronized void write(int x, int y, byte[] data) throws IOException {
+		final int entry = entry(x, y);
+		final int sector = allocate(sectorsFor(data.length));
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		final long position = (long) sector * SECTOR_SIZE;
+		while(buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+		//Data that was never in the offset table can be replaced right away.
+		final int[] replaced = pending.put(entry, new int[] {sector, data.length});
+		if(replaced != null)
+			release(replaced[0], replaced[1]);
+	}
+	
+	/**
+	 * Forces the written data to disk and then points the offset table at it.
+	 * @throws IOException If the data could not be forced to disk.
+	 */
+	synchronized void flush() throws IOException {
+		channel.force(false);
+		if(pending.isEmpty())
+			return;
+		final int[][] previous = new int[pending.size()][];
+		int i = 0;
+		for(Map.Entry<Integer,int[]> e : pending.entrySet()) {
+			final int entry = e.getKey();
+			previous[i++] = new int[] {header.getInt(entry), header.getInt(entry + 4)};
+			header.putInt(entry, e.getValue()[0]);
+			header.putInt(entry + 4, e.getValue()[1]);
+		}
+		header.force();
+		pending.clear();
+		for(int[] old : previous) {
+			if(old[0] != 0)
+				release(old[0], old[1]);
+		}
+	}
+	
+	/**
+	 * @return The number of sectors the file needs to hold its header and every chunk.
+	 */
+	synchronized int getSectorCount() {
+		return Math.max(HEADER_SECTORS, usedSectors.length());
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		channel.close();
+	}
+	
+	RegionFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		header = channel.map(MapMode.READ_WRITE, 0, HEADER_SECTORS * SECTOR_SIZE);
+		usedSectors.set(0, HEADER_SECTORS);
+		for(int entry=0; entry<SIZE * SIZE * ENTRY_SIZE; entry+=ENTRY_SIZE) {
+			final int sector = header.getInt(entry);
+			if(sector != 0)
+				usedSectors.set(sector, sector + sectorsFor(header.getInt(entry + 4)));
+		}
+	}
+	
+}
@@ -0,0 +1,107 @@
+package com.podts.rpg.server.model.universe.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.podts.rpg.server.Utils;
+import com.podts.rpg.server.utils.LongKeyMap;
+
+/**
+ * Stores chunks in {@link RegionFile region files} inside of a directory.
+ * Every region file holds {@value RegionFile#SIZE} by {@value RegionFile#SIZE} chunks of a single plane.
+ * Region files are only created once a chunk inside of them is saved.
+ */
+public final class RegionFileStorage implements ChunkStorage {
+	
+	/**
+	 * Chunk coordinates shifted right by this many bits are the coordinates of their region file.
+	 */
+	private static final int REGION_SHIFT = RegionFile.SHIFT;
+	
+	private final Path directory;
+	private final Map<Integer,LongKeyMap<RegionFile>> planes = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+	
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	private Path getPath(int rx, int ry, int z) {
+		return directory.resolve("r." + z + "." + rx + "." + ry + ".rgn");
+	}
+	
+	/**
+	 * Returns the region file that holds the chunk with the given chunk coordinates.
+	 * @param create - If the region file should be created when it does not exist.
+	 * @return The region file or null if it does not exist and should not be created.
+	 */
+	private RegionFile getRegion(int x, int y, int z, boolean create) throws IOException {
+		if(closed) throw new IOException("Cannot use a closed RegionFileStorage.");
+		final int rx = x >> REGION_SHIFT, ry = y >> REGION_SHIFT;
+		final long key = LongKeyMap.pack(rx, ry);
+		final LongKeyMap<RegionFile> regions = planes.computeIfAbsent(z, k -> new LongKeyMap<>());
+		RegionFile region = regions.get(key);
+		if(region != null)
+			return region;
+		synchronized(regions) {
+			region = regions.get(key);
+			if(region != null)
+				return region;
+			final Path path = getPath(rx, ry, z);
+			if(!create && !Files.exists(path))
+				return null;
+			Files.createDirectories(directory);
+			region = new RegionFile(path);
+			regions.put(key, region);
+			return region;
+		}
+	}
+	
+	@Override
+	public byte[] load(int x, int y, int z) throws IOException {
+		final RegionFile region = getRegion(x, y, z, false);
+		if(region == null)
+			return null;
+		return region.read(x, y);
+	}
+	
+	@Override
+	public void save(int x, int y, int z, byte[] data) throws IOException {
+		Utils.assertNullArg(data, "Cannot save null chunk data.");
+		getRegion(x, y, z, true).write(x, y, data);
+	}
+	
+	@Override
+	public long regionOf(int x, int y, int z) {
+		return LongKeyMap.pack(y >> REGION_SHIFT, x >> REGION_SHIFT);
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		for(LongKeyMap<RegionFile> regions : planes.values()) {
+			for(RegionFile region : (Iterable<RegionFile>) regions.values()::iterator)
+				region.flush();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		for(LongKeyMap<RegionFile> regions : planes.values()) {
+			synchronized(regions) {
+				for(RegionFile region : (Iterable<RegionFile>) regions.values()::iterator)
+					region.close();
+				regions.clear();
+			}
+		}
+	}
+	
+	public RegionFileStorage(Path directory) {
+		Utils.assertNullArg(directory, "Cannot store chunks in a null directory.");
+		this.directory = directory;
+	}
+	
+}
@@ -183,6 +183,7 @@ public abstract class NetworkManager {
 	}
 	
 	protected final void onPlayerDisconnect(NetworkStream networkStream) {
+		PacketHandler.removeMailbox(networkStream);
 		for(NetworkStreamListener listener : streamListeners) {
 			listener.onDisconnect(networkStream);
 		}
@@ -14,6 +14,18 @@ public interface NetworkStream {
 	
 	public void closeStream();
 	
+	/**
+	 * Stops or resumes reading packets from this stream.
+	 * Packets that were already read when reading stops are still delivered.
+	 * @param reading - false to stop reading, true to resume.
+	 */
+	public void setReading(boolean reading);
+	
+	/**
+	 * @return true if the client reads slower than it is sent to, tiles and chunks are not streamed to it until it catches up.
+	 */
+	public boolean isSaturated();
+	
 	public InetAddress getAddress();
 	
 	public int getPing();
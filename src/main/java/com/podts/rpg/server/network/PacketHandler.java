@@ -1,17 +1,22 @@
 package com.podts.rpg.server.network;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.podts.rpg.server.AccountLoader;
 import com.podts.rpg.server.AccountLoader.AccountAlreadyExistsException;
 import com.podts.rpg.server.AccountLoader.AccountDoesNotExistException;
 import com.podts.rpg.server.AccountLoader.IncorrectPasswordException;
 import com.podts.rpg.server.AccountLoader.InvalidUsernameException;
-import com.podts.rpg.server.GameEngine;
+import com.podts.rpg.server.GameEngine.TickPhase;
 import com.podts.rpg.server.GameStates;
 import com.podts.rpg.server.Player;
 import com.podts.rpg.server.Server;
@@ -162,7 +167,7 @@ public final class PacketHandler {
 				if(responseType == null) responseType = LoginResponseType.DECLINE;
 				
 				networkStream.sendPacket(new LoginResponsePacket(responseType, response));
-
+				
 				if(LoginResponseType.DECLINE.equals(responseType)) {
 					networkStream.closeStream();
 					return;
@@ -178,6 +183,9 @@ public final class PacketHandler {
 		
 	}
 	
+	private static final Map<NetworkStream,PacketMailbox> mailboxes = new ConcurrentHashMap<>();
+	private static final LongAdder overflowDisconnects = new LongAdder();
+	
 	public static void handlePacket(Packet packet) {
 		
 		final PacketConsumer handler = handlers.get(packet.getClass());
@@ -185,8 +193,12 @@ public final class PacketHandler {
 		
 		Server.get().getLogger().finer("Recieved " + packet.getClass().getSimpleName() + " from " + packet.getOrigin().getPlayer());
 		
-		if(handler != null) {;
-			GameEngine.get().submit(new PacketRunner(handler, packet, networkStream));
+		if(handler != null) {
+			final boolean open = networkStream.isOpen();
+			if(!enqueue(networkStream, new PacketRunner(handler, packet, networkStream)) && open) {
+				getLogger().warning("Disconnected " + networkStream.ownerString()
+						+ ", it kept sending packets while its mailbox was full.");
+			}
 		} else {
 			getLogger().warning("Recieved unhandled packet(" + packet.getClass().getSimpleName()
 					+ ") from " + packet.getOrigin().ownerString());
@@ -194,6 +206,96 @@ public final class PacketHandler {
 		
 	}
 	
+	/**
+	 * Adds a packet to the mailbox of its stream, it waits there until the next {@link TickPhase#INBOUND inbound} phase.
+	 * Packets from a stream that has closed are dropped, so the mailbox of a disconnected stream is never created again.
+	 * A stream that ignores the pause of its full mailbox is closed, see {@link PacketMailbox}.
+	 * @param networkStream - The stream the packet came from.
+	 * @param task - Handles the packet.
+	 * @return true if the packet was added, false if the stream is closed.
+	 */
+	static boolean enqueue(NetworkStream networkStream, Runnable task) {
+		if(!networkStream.isOpen())
+			return false;
+		final PacketMailbox mailbox = mailboxes.computeIfAbsent(networkStream, PacketMailbox::new);
+		if(!networkStream.isOpen()) {
+			//The stream may have closed and had its mailbox removed while this one was created.
+			mailboxes.remove(networkStream, mailbox);
+			return false;
+		}
+		if(!mailbox.offer(task)) {
+			overflowDisconnects.increment();
+			networkStream.closeStream();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Handles the packets waiting in every mailbox.
+	 * The packets of each stream are handled in order and the streams are handled one after another,
+	 * so handlers never run at the same time as each other or as the rest of the tick.
+	 * This runs on the tick thread in the {@link TickPhase#INBOUND inbound} phase of every tick.
+	 */
+	public static void drainMailboxes() {
+		for(PacketMailbox mailbox : mailboxes.values()) {
+			//Paused mailboxes are drained even when empty so their stream resumes.
+			if(mailbox.getQueued() > 0 || mailbox.isPaused())
+				mailbox.drain();
+		}
+	}
+	
+	public static Collection<PacketMailbox> getMailboxes() {
+		return Collections.unmodifiableCollection(mailboxes.values());
+	}
+	
+	public static Stream<PacketMailbox> mailboxes() {
+		return getMailboxes().stream();
+	}
+	
+	/**
+	 * @return The number of packets waiting in all mailboxes.
+	 */
+	public static int getQueuedPackets() {
+		return mailboxes().mapToInt(PacketMailbox::getQueued).sum();
+	}
+	
+	/**
+	 * @return The largest number of packets that have been waiting at once in any current mailbox.
+	 */
+	public static int getMailboxHighWater() {
+		return mailboxes().mapToInt(PacketMailbox::getHighWater).max().orElse(0);
+	}
+	
+	/**
+	 * @return The number of streams that are not read from because their mailbox is full.
+	 */
+	public static long getPausedStreams() {
+		return mailboxes().filter(PacketMailbox::isPaused).count();
+	}
+	
+	/**
+	 * @return The number of times a stream was paused because its mailbox was full, including streams that have since disconnected.
+	 */
+	public static long getReadPauses() {
+		return PacketMailbox.getTotalPauses();
+	}
+	
+	/**
+	 * @return The number of streams that were closed because they kept sending while their mailbox was full.
+	 */
+	public static long getOverflowDisconnects() {
+		return overflowDisconnects.sum();
+	}
+	
+	/**
+	 * Drops the mailbox of a stream that has disconnected, its waiting packets are not handled.
+	 * @param networkStream - The stream.
+	 */
+	static void removeMailbox(NetworkStream networkStream) {
+		mailboxes.remove(networkStream);
+	}
+	
 	private static final class PacketRunner implements Runnable {
 		
 		private final Packet packet;
@@ -0,0 +1,197 @@
+package com.podts.rpg.server.network;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
+
+/**
+ * Holds the packets of a single {@link NetworkStream} until they are handled.
+ * The packets of a stream are handled one at a time in the order they arrived,
+ * the mailboxes of all streams are drained one after another on the tick thread.
+ * <p>
+ * Mailboxes of different players are deliberately not drained in parallel.
+ * Handlers move entities and change tiles, which updates monitoring regions, chunk subscriptions
+ * and the region events deferred to the {@link com.podts.rpg.server.GameEngine.TickPhase#REGIONS region phase},
+ * and none of these are safe to change from several threads at once.
+ * Draining on the tick thread also makes the region events of a tick follow the order the packets were handled in.
+ * Reading, decoding and decrypting packets still happens in parallel on the network threads,
+ * so only the cheap handlers run serially.
+ * </p>
+ * <p>
+ * Packets are never dropped, since every later packet of a stream may depend on the ones before it.
+ * Once a mailbox is full, reading from its stream is paused until at least half of the waiting packets are handled.
+ * Packets the stream had already read when it was paused are still added.
+ * If a stream keeps sending until its mailbox holds {@value #OVERFLOW_FACTOR} times the capacity,
+ * {@link #offer(Runnable)} fails and the stream has to be closed.
+ * </p>
+ */
+public final class PacketMailbox {
+	
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	/**
+	 * How many times its capacity a paused mailbox may hold before its stream is considered to ignore the pause.
+	 */
+	public static final int OVERFLOW_FACTOR = 8;
+	
+	private static final LongAdder totalPauses = new LongAdder();
+	
+	/**
+	 * @return The number of times any mailbox paused its stream.
+	 */
+	static long getTotalPauses() {
+		return totalPauses.sum();
+	}
+	
+	private final NetworkStream stream;
+	private final int capacity;
+	private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final Object drainLock = new Object(), pauseLock = new Object();
+	
+	private final AtomicLong received = new AtomicLong(), handled = new AtomicLong();
+	private volatile int highWater;
+	private volatile boolean paused;
+	private volatile long pauses;
+	
+	public NetworkStream getStream() {
+		return stream;
+	}
+	
+	/**
+	 * @return The number of waiting packets at which reading from the stream is paused.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return The number of packets waiting to be handled.
+	 */
+	public int getQueued() {
+		return size.get();
+	}
+	
+	/**
+	 * @return The largest number of packets that have been waiting at once.
+	 */
+	public int getHighWater() {
+		return highWater;
+	}
+	
+	public long getReceived() {
+		return received.get();
+	}
+	
+	public long getHandled() {
+		return handled.get();
+	}
+	
+	/**
+	 * @return true if reading from the stream is paused because this mailbox is full.
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+	
+	/**
+	 * @return The number of times reading from the stream was paused.
+	 */
+	public long getPauses() {
+		return pauses;
+	}
+	
+	/**
+	 * Adds a packet to be handled, pausing the stream if this mailbox is full.
+	 * @param task - Handles the packet.
+	 * @return true if the packet was added, false if the stream kept sending far past the capacity and has to be closed.
+	 */
+	boolean offer(final Runnable task) {
+		received.incrementAndGet();
+		int current;
+		do {
+			current = size.get();
+			if(current >= capacity * OVERFLOW_FACTOR)
+				return false;
+		} while(!size.compareAndSet(current, current + 1));
+		queue.add(task);
+		if(current + 1 > highWater)
+			highWater = current + 1;
+		if(current + 1 >= capacity)
+			pause();
+		return true;
+	}
+	
+	private void pause() {
+		synchronized(pauseLock) {
+			if(paused)
+				return;
+			paused = true;
+			++pauses;
+			totalPauses.increment();
+			stream.setReading(false);
+		}
+	}
+	
+	/**
+	 * Resumes reading from the stream if it is paused and at most half of the capacity is waiting.
+	 */
+	private void resumeIfDrained() {
+		synchronized(pauseLock) {
+			if(!paused || size.get() > capacity / 2)
+				return;
+			paused = false;
+			stream.setReading(true);
+		}
+	}
+	
+	/**
+	 * Handles the packets that are in this mailbox at the time of calling in order.
+	 * Packets that arrive while draining wait for the next drain.
+	 * Reading from the stream resumes once at most half of the capacity is waiting.
+	 * @return The number of packets handled.
+	 */
+	int drain() {
+		synchronized(drainLock) {
+			int count = 0;
+			for(int i=size.get(); i>0; --i) {
+				final Runnable task = queue.poll();
+				if(task == null)
+					break;
+				size.decrementAndGet();
+				final long start = Profiler.start();
+				try {
+					task.run();
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+				Profiler.record(Metric.PACKET, start);
+				++count;
+			}
+			handled.addAndGet(count);
+			resumeIfDrained();
+			return count;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return stream.ownerString() + " queued=" + getQueued() + " highWater=" + getHighWater()
+			+ " handled=" + getHandled() + " pauses=" + getPauses() + (isPaused() ? " paused" : "");
+	}
+	
+	PacketMailbox(final NetworkStream stream, final int capacity) {
+		this.stream = stream;
+		this.capacity = capacity;
+	}
+	
+	PacketMailbox(final NetworkStream stream) {
+		this(stream, DEFAULT_CAPACITY);
+	}
+	
+}
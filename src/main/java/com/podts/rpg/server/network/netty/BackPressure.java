@@ -0,0 +1,279 @@
+package com.podts.rpg.server.network.netty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.podts.rpg.server.GameEngine;
+import com.podts.rpg.server.GameEngine.TickPhase;
+import com.podts.rpg.server.Player;
+import com.podts.rpg.server.Server;
+import com.podts.rpg.server.model.entity.PlayerEntity;
+import com.podts.rpg.server.model.universe.World;
+import com.podts.rpg.server.network.Packet;
+import com.podts.rpg.server.network.packet.ChunkPacket;
+import com.podts.rpg.server.network.packet.EntityPacket;
+import com.podts.rpg.server.network.packet.TilePacket;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Keeps a client that reads slower than it is sent to from filling the memory of the server.
+ * While the channel of a stream is over its high water mark the stream is {@link NettyStream#isSaturated() saturated},
+ * worlds stop streaming tiles and chunks to it and entity updates are merged so only the latest update of every entity is held.
+ * The few tile and chunk packets that were already on their way are held back in order,
+ * past {@value #MAX_HELD_TILES} of them every held one is dropped since the client has to be sent its whole view again anyway.
+ * Everything held is written once the channel is writable again and the world of the player is told to
+ * {@link World#resumeStreaming(Player, boolean) resume streaming}.
+ * A stream that stays saturated for longer than its limit is closed.
+ */
+final class BackPressure {
+	
+	public static final long DEFAULT_MAX_SATURATION = TimeUnit.SECONDS.toNanos(10);
+	
+	/**
+	 * The number of tile and chunk packets that are held back before they are dropped.
+	 */
+	public static final int MAX_HELD_TILES = 64;
+	
+	private static final LongAdder totalHeld = new LongAdder(), totalMerged = new LongAdder(),
+			totalDropped = new LongAdder(), totalDisconnects = new LongAdder();
+	
+	static long getTotalHeld() {
+		return totalHeld.sum();
+	}
+	
+	static long getTotalMerged() {
+		return totalMerged.sum();
+	}
+	
+	static long getTotalDropped() {
+		return totalDropped.sum();
+	}
+	
+	static long getTotalDisconnects() {
+		return totalDisconnects.sum();
+	}
+	
+	/**
+	 * Tells the back pressure of a stream when its channel stops or starts being writable.
+	 */
+	@Sharable
+	static final class WritabilityHandler extends ChannelInboundHandlerAdapter {
+		
+		@Override
+		public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+			final NettyStream stream = NettyStream.of(ctx.channel());
+			if(stream != null) {
+				if(ctx.channel().isWritable())
+					stream.getBackPressure().resume();
+				else
+					stream.getBackPressure().hold();
+			}
+			ctx.fireChannelWritabilityChanged();
+		}
+		
+	}
+	
+	static final WritabilityHandler HANDLER = new WritabilityHandler();
+	
+	private final NettyStream stream;
+	private final long maxSaturation;
+	
+	private final Queue<Packet> heldTiles = new ArrayDeque<>();
+	private final Map<Integer,EntityPacket> heldUpdates = new LinkedHashMap<>();
+	private boolean holding, tilesDropped;
+	private long saturatedSince;
+	private long held, merged, dropped;
+	
+	public long getMaxSaturation(TimeUnit unit) {
+		return unit.convert(maxSaturation, TimeUnit.NANOSECONDS);
+	}
+	
+	public synchronized boolean isHolding() {
+		return holding;
+	}
+	
+	/**
+	 * @return The number of packets that were held back.
+	 */
+	public synchronized long getHeld() {
+		return held;
+	}
+	
+	/**
+	 * @return The number of entity updates that were replaced by a later update of the same entity.
+	 */
+	public synchronized long getMerged() {
+		return merged;
+	}
+	
+	/**
+	 * @return true if tile or chunk packets were dropped since the stream became saturated.
+	 */
+	public synchronized boolean isTilesDropped() {
+		return tilesDropped;
+	}
+	
+	/**
+	 * @return The number of packets that were held back or would have been held back but were never sent.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Holds the given packet back if the channel is saturated.
+	 * @param packet - The packet that is about to be written.
+	 * @return true if the packet was held back, false if it should be written now.
+	 */
+	synchronized boolean offer(Packet packet) {
+		if(!holding) {
+			if(getChannel().isWritable())
+				return false;
+			startHolding();
+		}
+		if(packet instanceof TilePacket || packet instanceof ChunkPacket) {
+			if(!tilesDropped && heldTiles.size() >= MAX_HELD_TILES)
+				dropTiles();
+			if(tilesDropped) {
+				++dropped;
+				totalDropped.increment();
+			} else {
+				heldTiles.add(packet);
+				++held;
+				totalHeld.increment();
+			}
+			return true;
+		}
+		if(packet instanceof EntityPacket) {
+			final EntityPacket p = (EntityPacket) packet;
+			final Integer id = p.getEntity().getID();
+			if(p.getType() == EntityPacket.UpdateType.UPDATE) {
+				if(heldUpdates.put(id, p) == null) {
+					++held;
+					totalHeld.increment();
+				} else {
+					++merged;
+					totalMerged.increment();
+				}
+				return true;
+			}
+			//A create or destroy supersedes any update of the entity.
+			if(heldUpdates.remove(id) != null) {
+				++dropped;
+				totalDropped.increment();
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Drops the held tile and chunk packets, the view of the client is sent again once the stream resumes.
+	 */
+	private void dropTiles() {
+		tilesDropped = true;
+		dropped += heldTiles.size();
+		totalDropped.add(heldTiles.size());
+		heldTiles.clear();
+	}
+	
+	/**
+	 * Starts holding packets back, called when the channel stops being writable.
+	 */
+	synchronized void hold() {
+		if(!holding)
+			startHolding();
+	}
+	
+	private void startHolding() {
+		holding = true;
+		final long since = saturatedSince = System.nanoTime();
+		getChannel().eventLoop().schedule(() -> checkSaturation(since), maxSaturation, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Closes the stream if it is still saturated since the given time.
+	 */
+	private void checkSaturation(long since) {
+		synchronized(this) {
+			if(!holding || saturatedSince != since)
+				return;
+		}
+		discard();
+		totalDisconnects.increment();
+		final Server server = Server.get();
+		if(server != null)
+			server.getLogger().warning("Disconnecting " + stream.ownerString() + ", it could not keep up for "
+					+ getMaxSaturation(TimeUnit.SECONDS) + " seconds.");
+		stream.closeStream();
+	}
+	
+	/**
+	 * Writes and flushes everything that was held back, called once the channel is writable again.
+	 * The world of the player then sends what it did not stream while the stream was saturated.
+	 */
+	void resume() {
+		final List<Packet> packets;
+		final boolean resend;
+		synchronized(this) {
+			if(!holding)
+				return;
+			holding = false;
+			resend = tilesDropped;
+			tilesDropped = false;
+			packets = new ArrayList<>(heldTiles.size() + heldUpdates.size());
+			packets.addAll(heldTiles);
+			packets.addAll(heldUpdates.values());
+			heldTiles.clear();
+			heldUpdates.clear();
+		}
+		if(!packets.isEmpty()) {
+			for(Packet packet : packets)
+				getChannel().write(packet);
+			getChannel().flush();
+		}
+		resumeStreaming(resend);
+	}
+	
+	private void resumeStreaming(final boolean dropped) {
+		final Player player = stream.getPlayer();
+		if(player == null)
+			return;
+		final PlayerEntity entity = player.getEntity();
+		if(entity == null || !(entity.getSpace() instanceof World))
+			return;
+		final World world = (World) entity.getSpace();
+		GameEngine.runInPhase(TickPhase.OUTBOUND, () -> world.resumeStreaming(player, dropped));
+	}
+	
+	/**
+	 * Forgets everything that was held back, called when the stream is closed.
+	 */
+	synchronized void discard() {
+		final int count = heldTiles.size() + heldUpdates.size();
+		dropped += count;
+		totalDropped.add(count);
+		heldTiles.clear();
+		heldUpdates.clear();
+		tilesDropped = false;
+	}
+	
+	private Channel getChannel() {
+		return stream.getChannel();
+	}
+	
+	BackPressure(NettyStream stream, long maxSaturation) {
+		this.stream = stream;
+		this.maxSaturation = maxSaturation;
+	}
+	
+}
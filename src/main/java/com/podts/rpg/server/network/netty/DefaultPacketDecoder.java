@@ -84,8 +84,12 @@ class DefaultPacketDecoder extends ByteToMessageDecoder {
 		packetConstructors[PID_LOGINREQUEST] = new PacketConstructor() {
 			@Override
 			public LoginPacket construct(NetworkStream s, int size, byte opCode, ByteBuf buf) {
+				final int end = buf.readerIndex() + size;
 				String username = readEncryptedString(s, buf);
 				String password = readEncryptedString(s, buf);
+				//Newer clients follow the login with the protocol they would like.
+				if(buf.readerIndex() < end)
+					((NettyStream) s).setProtocol(WireProtocol.negotiate(buf.readByte()));
 				return new LoginPacket(username, password);
 			}
 		};
@@ -132,7 +136,7 @@ class DefaultPacketDecoder extends ByteToMessageDecoder {
 	@Override
 	protected void decode(ChannelHandlerContext c, ByteBuf buf, List<Object> out) throws Exception {
 
-		NetworkStream stream = (NetworkStream) c.channel();
+		NetworkStream stream = NettyStream.of(c.channel());
 
 		int size = buf.readInt();
 		byte opCode = buf.readByte(); 
@@ -1,6 +1,8 @@
 package com.podts.rpg.server.network.netty;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.PublicKey;
 import java.util.Collection;
 import java.util.EnumMap;
@@ -10,8 +12,9 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
 
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
 import com.podts.rpg.server.Server;
 import com.podts.rpg.server.model.EntityType;
 import com.podts.rpg.server.model.universe.Entity;
@@ -19,11 +22,11 @@ import com.podts.rpg.server.model.universe.HasLocation;
 import com.podts.rpg.server.model.universe.Location;
 import com.podts.rpg.server.model.universe.Tile;
 import com.podts.rpg.server.model.universe.TileElement.TileType;
-import com.podts.rpg.server.network.NetworkStream;
 import com.podts.rpg.server.network.Packet;
 import com.podts.rpg.server.network.packet.AESReplyPacket;
 import com.podts.rpg.server.network.packet.AcknowledgePacket;
 import com.podts.rpg.server.network.packet.AcknowledgementPacket;
+import com.podts.rpg.server.network.packet.ChunkPacket;
 import com.podts.rpg.server.network.packet.EntityPacket;
 import com.podts.rpg.server.network.packet.LoginResponsePacket;
 import com.podts.rpg.server.network.packet.LoginResponsePacket.LoginResponseType;
@@ -36,8 +39,9 @@ import com.podts.rpg.server.network.packet.TilePacket.TileUpdateType;
 import com.podts.rpg.server.network.packet.TileSelectionPacket;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
@@ -60,9 +64,18 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 	private static final byte PID_MESSAGE = 7;
 	private static final byte PID_ACK = 8;
 	private static final byte PID_TILESELECTION = 9;
+	private static final byte PID_CHUNK = 10;
 	
 	private static final String STRING_ENCODING = "UTF-8";
 	
+	private static final int DEFAULT_SIZE_ESTIMATE = 16;
+	private static final int AES_BLOCK_SIZE = 16;
+	private static final int RSA_BLOCK_SIZE = 256;
+	private static final int LOCATION_SIZE = 3 * Integer.BYTES;
+	private static final int PLANE_LOCATION_SIZE = 2 * Integer.BYTES;
+	private static final int MAX_VARINT_SIZE = 5;
+	private static final int VAR_LOCATION_SIZE = 3 * MAX_VARINT_SIZE;
+	
 	private static final Logger getLogger() {
 		return Server.get().getLogger();
 	}
@@ -95,6 +108,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				//Write encrypted secret into buffer.
 				buf.writeBytes(encryptedSecret);
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				return RSA_BLOCK_SIZE;
+			}
 		});
 		
 		addEncoder(LoginResponsePacket.class, new PacketEncoder(PID_LOGINRESPONSE) {
@@ -104,6 +121,14 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				LoginResponsePacket p = (LoginResponsePacket) op;
 				buf.writeByte(responseTypeMap.get(p.getType()));
 				writeString(p.getResponse(), buf);
+				//Clients that asked for a protocol are told which one they got.
+				if(isCompact(s))
+					buf.writeByte(s.getProtocol().getID());
+			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				LoginResponsePacket p = (LoginResponsePacket) op;
+				return 1 + stringSize(p.getResponse()) + (isCompact(s) ? 1 : 0);
 			}
 			void init() {
 				responseTypeMap.put(LoginResponseType.WAIT, 0);
@@ -120,6 +145,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				StatePacket p = (StatePacket) op;
 				buf.writeByte(p.getState().getID());
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				return 1;
+			}
 		});
 		
 		addEncoder(PlayerInitPacket.class, new PacketEncoder(PID_INIT) {
@@ -129,6 +158,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				buf.writeInt(p.getPlayer().getID());
 				writeLocation(p.getPlayer().getEntity().getLocation(), buf);
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				return Integer.BYTES + LOCATION_SIZE;
+			}
 		});
 		
 		addEncoder(TilePacket.class, new PacketEncoder(PID_TILE) {
@@ -162,6 +195,23 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				}
 			}
 			
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				TilePacket p = (TilePacket) op;
+				int size = 2;
+				if(p.isCreate()) {
+					if(p.isSingle())
+						size += 1 + LOCATION_SIZE;
+					else if(p.isGroup())
+						size += gridTilesSize(p.getTiles());
+				} else if(p.isDestroy()) {
+					size += LOCATION_SIZE;
+					if(p.isGroup())
+						size += 2 * Integer.BYTES;
+				}
+				return size;
+			}
+			
 			@Override
 			void init() {
 				updateTypes.put(TileUpdateType.CREATE, 0);
@@ -173,6 +223,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		});
 		
 		addEncoder(EntityPacket.class, new PacketEncoder(PID_ENTITY) {
+			/**
+			 * Only sent with {@link WireProtocol#COMPACT}, an update with the difference to the last location that was sent.
+			 */
+			private static final int MOVE = 3;
 			private final Map<EntityPacket.UpdateType,Integer> packetTypeMap = new EnumMap<EntityPacket.UpdateType,Integer>(EntityPacket.UpdateType.class);
 			private final Map<EntityType,Integer> entityTypeMap = new EnumMap<EntityType,Integer>(EntityType.class);
 			void init() {
@@ -185,6 +239,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 			@Override
 			public void encode(NettyStream s, Packet op, ByteBuf buf) {
 				EntityPacket p = (EntityPacket) op;
+				if(isCompact(s)) {
+					encodeCompact(s, p, buf);
+					return;
+				}
 				Entity e = p.getEntity();
 				buf.writeByte(packetTypeMap.get(p.getType()));
 				buf.writeInt(e.getID());
@@ -199,6 +257,62 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 					break;
 				}
 			}
+			private void encodeCompact(NettyStream s, EntityPacket p, ByteBuf buf) {
+				final Entity e = p.getEntity();
+				final Map<Integer,Location> sentLocations = s.getSentLocations();
+				switch(p.getType()) {
+				case DESTROY:
+					buf.writeByte(packetTypeMap.get(p.getType()));
+					writeVarInt(e.getID(), buf);
+					sentLocations.remove(e.getID());
+					break;
+				case CREATE:
+					buf.writeByte(packetTypeMap.get(p.getType()));
+					writeVarInt(e.getID(), buf);
+					writeString(e.getName(), buf);
+					buf.writeByte(entityTypeMap.get(e.getType()));
+					writeVarLocation(e.getLocation(), buf);
+					sentLocations.put(e.getID(), e.getLocation());
+					break;
+				case UPDATE:
+					final Location location = e.getLocation();
+					final Location last = sentLocations.put(e.getID(), location);
+					if(last == null) {
+						buf.writeByte(packetTypeMap.get(p.getType()));
+						writeVarInt(e.getID(), buf);
+						writeVarLocation(location, buf);
+					} else {
+						buf.writeByte(MOVE);
+						writeVarInt(e.getID(), buf);
+						writeSignedVarInt(location.getX() - last.getX(), buf);
+						writeSignedVarInt(location.getY() - last.getY(), buf);
+						writeSignedVarInt(location.getZ() - last.getZ(), buf);
+					}
+					break;
+				}
+			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				EntityPacket p = (EntityPacket) op;
+				if(isCompact(s)) {
+					switch(p.getType()) {
+					case CREATE:
+						return 1 + MAX_VARINT_SIZE + stringSize(p.getEntity().getName()) + 1 + VAR_LOCATION_SIZE;
+					case UPDATE:
+						return 1 + MAX_VARINT_SIZE + VAR_LOCATION_SIZE;
+					default:
+						return 1 + MAX_VARINT_SIZE;
+					}
+				}
+				switch(p.getType()) {
+				case CREATE:
+					return 1 + Integer.BYTES + stringSize(p.getEntity().getName()) + 1 + LOCATION_SIZE;
+				case UPDATE:
+					return 1 + Integer.BYTES + LOCATION_SIZE;
+				default:
+					return 1 + Integer.BYTES;
+				}
+			}
 		});
 		
 		addEncoder(AcknowledgePacket.class, new PacketEncoder(PID_ACK) {
@@ -207,6 +321,10 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				AcknowledgePacket p = (AcknowledgePacket) op;
 				buf.writeInt(p.getACK());
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				return Integer.BYTES;
+			}
 		});
 		
 		addEncoder(MessagePacket.class, new PacketEncoder(PID_MESSAGE) {
@@ -215,6 +333,11 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				MessagePacket p = (MessagePacket) op;
 				writeEncryptedString(p.getMessage(), stream, buf);
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				MessagePacket p = (MessagePacket) op;
+				return Integer.BYTES + encryptedSize(stringSize(p.getMessage()));
+			}
 		});
 		
 		addEncoder(TileSelectionPacket.class, new PacketEncoder(PID_TILESELECTION) {
@@ -224,20 +347,81 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 				Collection<Tile> tiles = p.getSelections();
 				writePlaneLocations(tiles, buf);
 			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				TileSelectionPacket p = (TileSelectionPacket) op;
+				return planeLocationsSize(p.getSelections());
+			}
+		});
+		
+		addEncoder(ChunkPacket.class, new PacketEncoder(PID_CHUNK) {
+			@Override
+			public void encode(NettyStream s, Packet op, ByteBuf buf) {
+				ChunkPacket p = (ChunkPacket) op;
+				buf.writeByte(p.isCreate() ? 0 : 1)
+				.writeInt(p.getX())
+				.writeInt(p.getY())
+				.writeInt(p.getZ());
+				if(p.isCreate()) {
+					buf.writeLong(p.getVersion());
+					writeGridTiles(p.getTiles(), buf);
+				}
+			}
+			@Override
+			int estimateSize(NettyStream s, Packet op) {
+				ChunkPacket p = (ChunkPacket) op;
+				int size = 1 + LOCATION_SIZE;
+				if(p.isCreate())
+					size += Long.BYTES + gridTilesSize(p.getTiles());
+				return size;
+			}
 		});
 		
 	}
 	
+	/**
+	 * Returns how many bytes the given packet will most likely take, so that it can be encoded into a buffer of that size without growing it.
+	 * @param s - The stream the packet is sent to.
+	 * @param p - The packet.
+	 * @return The size in bytes, exact for every packet that does not contain strings, encrypted data or varints.
+	 */
+	static int estimateSize(NettyStream s, Packet p) {
+		PacketEncoder encoder = encoders.get(p.getClass());
+		if(encoder == null)
+			return 0;
+		return 1 + encoder.estimateSize(s, p);
+	}
+	
+	/**
+	 * Writes the op code and the payload of the given packet.
+	 * @param s - The stream the packet is sent to.
+	 * @param p - The packet.
+	 * @param buf - The buffer to write to.
+	 * @return true if the packet was written, false if there is no encoder for it.
+	 */
+	static boolean writePacket(NettyStream s, Packet p, ByteBuf buf) {
+		PacketEncoder encoder = encoders.get(p.getClass());
+		if(encoder == null)
+			return false;
+		buf.writeByte(encoder.getOpCode());
+		encoder.encode(s, p, buf);
+		return true;
+	}
+	
+	@Override
+	protected ByteBuf allocateBuffer(ChannelHandlerContext c, Packet p, boolean preferDirect) throws Exception {
+		final int size = estimateSize(NettyStream.of(c.channel()), p);
+		return preferDirect ? c.alloc().ioBuffer(size) : c.alloc().heapBuffer(size);
+	}
+	
 	@Override
 	protected void encode(ChannelHandlerContext c, Packet p, ByteBuf buf) throws Exception {
 		
-		NettyStream s = (NettyStream) c.channel();
-		
-		PacketEncoder encoder = encoders.get(p.getClass());
+		NettyStream s = NettyStream.of(c.channel());
 		
-		if(encoder != null) {
-			buf.writeByte(encoder.getOpCode());
-			encoder.encode(s, p, buf);
+		final long start = Profiler.start();
+		if(writePacket(s, p, buf)) {
+			Profiler.record(Metric.ENCODE, start);
 		} else {
 			getLogger().warning("No encoder found for " + p.getClass().getSimpleName() + ", packet not sent!");
 		}
@@ -258,6 +442,35 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		.writeInt(loc.getZ());
 	}
 	
+	private static boolean isCompact(NettyStream s) {
+		return s != null && s.getProtocol() == WireProtocol.COMPACT;
+	}
+	
+	/**
+	 * Writes the given int in 7 bit groups, lowest first, with the high bit set on every group but the last.
+	 * Small positive values take a single byte.
+	 */
+	static void writeVarInt(int value, ByteBuf buf) {
+		while((value & ~0x7F) != 0) {
+			buf.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf.writeByte(value);
+	}
+	
+	/**
+	 * Writes the given int as a zigzag varint, so that values close to 0 take a single byte whatever their sign.
+	 */
+	static void writeSignedVarInt(int value, ByteBuf buf) {
+		writeVarInt((value << 1) ^ (value >> 31), buf);
+	}
+	
+	private static void writeVarLocation(Location loc, ByteBuf buf) {
+		writeSignedVarInt(loc.getX(), buf);
+		writeSignedVarInt(loc.getY(), buf);
+		writeSignedVarInt(loc.getZ(), buf);
+	}
+	
 	private static void writePlaneLocations(Collection<? extends HasLocation> locs, ByteBuf buf) {
 		Iterator<? extends HasLocation> it = locs.iterator();
 		buf.writeInt(locs.size());
@@ -276,6 +489,14 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		.writeInt(loc.getY());
 	}
 	
+	private static int planeLocationsSize(Collection<? extends HasLocation> locs) {
+		return Integer.BYTES + LOCATION_SIZE + (locs.size() - 1) * PLANE_LOCATION_SIZE;
+	}
+	
+	private static int gridTilesSize(Tile[][] tiles) {
+		return 2 * Integer.BYTES + LOCATION_SIZE + tiles.length * tiles[0].length;
+	}
+	
 	private static <T extends Tile> void writeGridTiles(T[][] tiles, ByteBuf buf) {
 		final int width = tiles.length;
 		final int height = tiles[0].length;
@@ -288,34 +509,63 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		}
 	}
 	
-	private static void writeEncryptedLocation(Location loc, NetworkStream networkStream, ByteBuf buf) {
-		ByteBuf plainBuf = Unpooled.buffer();
-		writeLocation(loc, plainBuf);
-		buf.writeBytes(encrypt(plainBuf.array(), networkStream.getSecretKey()));
-	}
-	
-	private static void writeEncryptedPlaneLocation(Location loc, NetworkStream stream, ByteBuf buf) {
-		ByteBuf plainBuf = Unpooled.buffer();
-		writePlaneLocation(loc, plainBuf);
-		buf.writeBytes(encrypt(plainBuf.array(), stream.getSecretKey()));
+	private static void writeEncryptedString(String string, NettyStream networkStream, ByteBuf buf) {
+		byte[] plain = encodeString(string);
+		ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(plain.length);
+		length.flip();
+		final int lengthIndex = buf.writerIndex();
+		buf.writeInt(0);
+		final int encryptedLength = writeEncrypted(networkStream, buf, length, ByteBuffer.wrap(plain));
+		buf.setInt(lengthIndex, encryptedLength);
 	}
 	
-	private static void writeEncryptedString(String string, NetworkStream networkStream, ByteBuf buf) {
+	/**
+	 * Encrypts the given plain bytes one after the other straight into the given buffer.
+	 * @param stream - The stream whose cipher encrypts the bytes.
+	 * @param buf - The buffer the encrypted bytes are written to.
+	 * @param plains - The bytes to encrypt.
+	 * @return The number of encrypted bytes written.
+	 * @throws EncoderException If the bytes could not be encrypted, which fails the write.
+	 */
+	private static int writeEncrypted(NettyStream stream, ByteBuf buf, ByteBuffer... plains) {
 		try {
-			ByteBuf plainBuf = Unpooled.buffer();
-			byte[] plain = string.getBytes(STRING_ENCODING);
-			plainBuf.writeInt(plain.length).writeBytes(plain);
-			byte[] encryptedBytes = encrypt(plainBuf.array(), networkStream.getSecretKey());
-			buf.writeInt(encryptedBytes.length).writeBytes(encryptedBytes);
-		} catch (UnsupportedEncodingException e) {
-			throw new AssertionError("No string encoder for " + STRING_ENCODING + "!");
+			final Cipher cipher = stream.getCipher();
+			int plainLength = 0;
+			for(ByteBuffer plain : plains)
+				plainLength += plain.remaining();
+			final int size = cipher.getOutputSize(plainLength);
+			buf.ensureWritable(size);
+			final ByteBuffer out = buf.internalNioBuffer(buf.writerIndex(), size);
+			final int start = out.position();
+			for(int i=0; i<plains.length - 1; ++i)
+				cipher.update(plains[i], out);
+			cipher.doFinal(plains[plains.length - 1], out);
+			final int written = out.position() - start;
+			buf.writerIndex(buf.writerIndex() + written);
+			return written;
+		} catch (GeneralSecurityException e) {
+			stream.resetCipher();
+			throw new EncoderException("Could not encrypt a packet for " + stream + ".", e);
 		}
 	}
 	
+	/**
+	 * @return The number of bytes the given number of plain bytes take once encrypted with AES.
+	 */
+	private static int encryptedSize(int plainSize) {
+		return (plainSize / AES_BLOCK_SIZE + 1) * AES_BLOCK_SIZE;
+	}
+	
 	private static void writeString(String string, ByteBuf buf) {
-		byte[] plain = encodeString(string);
-		buf.writeInt(plain.length);
-		buf.writeBytes(plain);
+		buf.writeInt(ByteBufUtil.utf8Bytes(string));
+		ByteBufUtil.writeUtf8(buf, string);
+	}
+	
+	/**
+	 * @return At most how many bytes the given string takes when written with {@link #writeString(String, ByteBuf)}.
+	 */
+	private static int stringSize(String string) {
+		return Integer.BYTES + ByteBufUtil.utf8MaxBytes(string);
 	}
 	
 	private static final byte[] encodeString(String string) {
@@ -326,25 +576,6 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		}
 	}
 	
-	private static final void encryptBuf(ByteBuf in, ByteBuf out, int size, SecretKey secretKey) {
-		in.resetReaderIndex();
-		byte[] rawBytes = new byte[size];
-		in.readBytes(rawBytes);
-		byte[] encBytes = encrypt(rawBytes, secretKey);
-		out.writeInt(encBytes.length).writeBytes(encBytes);
-	}
-	
-	private static byte[] encrypt(byte[] bytes, SecretKey secretKey) {
-		try {
-			Cipher cipher = Cipher.getInstance("AES");
-			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-			return cipher.doFinal(bytes);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return null;
-	}
-	
 	private static byte[] encrypt(byte[] bytes, PublicKey publicKey) {
 		try {
 			Cipher cipher = Cipher.getInstance("RSA");
@@ -366,6 +597,13 @@ class DefaultPacketEncoder extends MessageToByteEncoder<Packet> {
 		
 		public abstract void encode(NettyStream s, Packet op, ByteBuf buf);
 		
+		/**
+		 * @return How many bytes {@link #encode(NettyStream, Packet, ByteBuf)} most likely writes for the given packet.
+		 */
+		int estimateSize(NettyStream s, Packet op) {
+			return DEFAULT_SIZE_ESTIMATE;
+		}
+		
 		void init() {
 			
 		}
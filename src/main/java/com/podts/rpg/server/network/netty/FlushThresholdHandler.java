@@ -0,0 +1,53 @@
+package com.podts.rpg.server.network.netty;
+
+import com.podts.rpg.server.Profiler;
+import com.podts.rpg.server.Profiler.Metric;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Flushes a channel once the bytes written to it since the last flush reach a threshold,
+ * so that streams whose flush is deferred to the end of the tick do not hold on to too much data.
+ * Sits next to the socket, so flushes through it write to the socket right away and are profiled as {@link Metric#FLUSH}.
+ */
+final class FlushThresholdHandler extends ChannelOutboundHandlerAdapter {
+	
+	private final int threshold;
+	private int pending;
+	
+	public int getThreshold() {
+		return threshold;
+	}
+	
+	/**
+	 * @return The number of bytes written since the last flush.
+	 */
+	public int getPending() {
+		return pending;
+	}
+	
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if(msg instanceof ByteBuf)
+			pending += ((ByteBuf) msg).readableBytes();
+		ctx.write(msg, promise);
+		if(pending >= threshold)
+			flush(ctx);
+	}
+	
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		pending = 0;
+		final long start = Profiler.start();
+		ctx.flush();
+		Profiler.record(Metric.FLUSH, start);
+	}
+	
+	FlushThresholdHandler(int threshold) {
+		this.threshold = threshold;
+	}
+	
+}
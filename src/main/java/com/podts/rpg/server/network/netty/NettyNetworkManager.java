@@ -2,15 +2,22 @@ package com.podts.rpg.server.network.netty;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
+import com.podts.rpg.server.GameEngine;
+import com.podts.rpg.server.GameEngine.TickPhase;
+import com.podts.rpg.server.Utils;
 import com.podts.rpg.server.network.NetworkManager;
 import com.podts.rpg.server.network.NetworkStream;
 import com.podts.rpg.server.network.Packet;
 import com.podts.rpg.server.network.NetworkStreamListener;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -19,7 +26,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
@@ -28,6 +35,25 @@ import io.netty.util.concurrent.Future;
 public final class NettyNetworkManager extends NetworkManager {
 	
 	public static final int MAXIMUM_FRAME_LENGTH = 20_000;
+	public static final int DEFAULT_FLUSH_THRESHOLD = 16 * 1024;
+	public static final int DEFAULT_BOSS_THREADS = 1;
+	public static final WriteBufferWaterMark DEFAULT_WRITE_BUFFER_WATER_MARK = new WriteBufferWaterMark(32 * 1024, 64 * 1024);
+	
+	/**
+	 * When the packets written to a stream are flushed to the socket.
+	 */
+	public enum FlushPolicy {
+		/**
+		 * Every send is flushed right away, one write to the socket per send.
+		 */
+		IMMEDIATE(),
+		/**
+		 * Sends are flushed once per stream at the end of the tick they were made in,
+		 * or as soon as the flush threshold worth of bytes is waiting.
+		 * Sends are flushed right away when the game engine is not ticking.
+		 */
+		PER_TICK();
+	}
 	
 	private ServerBootstrap bootstrap;
 	private EventLoopGroup bossGroup;
@@ -40,6 +66,18 @@ public final class NettyNetworkManager extends NetworkManager {
 	}
 	
 	private final Set<NettyStream> streams, safeStreams;
+	private final Queue<NettyStream> unflushedStreams = new ConcurrentLinkedQueue<>();
+	private final Runnable flushTask = this::flushStreams;
+	
+	private volatile FlushPolicy flushPolicy = FlushPolicy.PER_TICK;
+	private volatile int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+	private volatile GameEngine tickEngine;
+	
+	private NettyTransport transport = NettyTransport.best(), boundTransport;
+	private int bossThreads = DEFAULT_BOSS_THREADS, workerThreads;
+	private boolean tcpNoDelay = true;
+	private WriteBufferWaterMark writeBufferWaterMark = DEFAULT_WRITE_BUFFER_WATER_MARK;
+	private volatile long maxSaturation = BackPressure.DEFAULT_MAX_SATURATION;
 	
 	private final ChannelInitializer<SocketChannel> channelInitializer = new ChannelInitializer<SocketChannel>() {
 		@Override
@@ -50,14 +88,17 @@ public final class NettyNetworkManager extends NetworkManager {
 			        NettyNetworkManager.this.closeChannel(future.channel());
 			    }
 			});
+			final NettyStream stream = new NettyStream(ch, maxSaturation);
 			ch.pipeline().addLast(new ChannelWatcher())
+			.addLast(new FlushThresholdHandler(flushThreshold))
 			.addLast(new DefaultFrameEncoder())
 			.addLast(new DefaultPacketEncoder())
 			.addLast(new DefaultFrameDecoder())
 			.addLast(new DefaultPacketDecoder())
-			.addLast(new DefaultPacketHandler());
+			.addLast(new DefaultPacketHandler())
+			.addLast(BackPressure.HANDLER);
 			
-			streams.add((NettyStream)ch);
+			streams.add(stream);
 		}
 	};
 	
@@ -74,7 +115,8 @@ public final class NettyNetworkManager extends NetworkManager {
 	}
 	
 	private final void closeChannel(Channel channel) {
-		NettyStream stream = (NettyStream) channel;
+		NettyStream stream = NettyStream.of(channel);
+		stream.getBackPressure().discard();
 		
 		stream.getPlayer().getEntity().deRegister();
 		streams.remove(stream);
@@ -97,31 +139,232 @@ public final class NettyNetworkManager extends NetworkManager {
 		
 	}
 	
+	public NettyTransport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Sets the transport to bind with, {@link NettyTransport#NIO} is used instead if it is not available.
+	 * Only takes effect on the next bind.
+	 * @param transport - The transport.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setTransport(NettyTransport transport) {
+		Utils.assertNullArg(transport, "Cannot set a null transport.");
+		this.transport = transport;
+		return this;
+	}
+	
+	/**
+	 * @return The transport that is in use, or null if not bound.
+	 */
+	public NettyTransport getBoundTransport() {
+		return boundTransport;
+	}
+	
+	public int getBossThreads() {
+		return bossThreads;
+	}
+	
+	/**
+	 * Sets how many threads accept connections, only takes effect on the next bind.
+	 * @param threads - The number of threads.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setBossThreads(int threads) {
+		Utils.assertArg(threads <= 0, "Cannot accept connections with less than one thread.");
+		bossThreads = threads;
+		return this;
+	}
+	
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+	
+	/**
+	 * Sets how many threads do the IO of connected streams, only takes effect on the next bind.
+	 * @param threads - The number of threads, 0 for the default of twice the number of cores.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setWorkerThreads(int threads) {
+		Utils.assertArg(threads < 0, "Cannot use a negative number of worker threads.");
+		workerThreads = threads;
+		return this;
+	}
+	
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+	
+	/**
+	 * Sets if Nagle's algorithm is disabled for streams that connect afterwards.
+	 * Flushes are already coalesced per tick, so waiting for more data in the kernel only adds latency.
+	 * @param noDelay - true to send as soon as flushed.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setTcpNoDelay(boolean noDelay) {
+		tcpNoDelay = noDelay;
+		return this;
+	}
+	
+	public WriteBufferWaterMark getWriteBufferWaterMark() {
+		return writeBufferWaterMark;
+	}
+	
+	/**
+	 * Sets how many bytes may wait to be written to a stream before it stops being writable,
+	 * and how few before it is writable again. Only takes effect on the next bind.
+	 * @param low - The low water mark in bytes.
+	 * @param high - The high water mark in bytes.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setWriteBufferWaterMark(int low, int high) {
+		writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+		return this;
+	}
+	
+	public long getMaxSaturation(TimeUnit unit) {
+		return unit.convert(maxSaturation, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Sets how long a stream may stay over its high water mark before it is disconnected.
+	 * Only streams that connect afterwards use the new limit.
+	 * @param duration - The longest time a stream may stay saturated.
+	 * @param unit - The unit of the duration.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setMaxSaturation(long duration, TimeUnit unit) {
+		Utils.assertArg(duration <= 0, "Cannot set a max saturation that is not positive.");
+		maxSaturation = unit.toNanos(duration);
+		return this;
+	}
+	
+	/**
+	 * @return The number of streams that are holding packets back because their client cannot keep up.
+	 */
+	public long getSaturatedStreams() {
+		return streams.stream()
+				.filter(s -> s.getBackPressure().isHolding())
+				.count();
+	}
+	
+	/**
+	 * @return The number of packets that were held back for clients that could not keep up.
+	 */
+	public long getHeldPackets() {
+		return BackPressure.getTotalHeld();
+	}
+	
+	/**
+	 * @return The number of entity updates that were replaced by a later update while held back.
+	 */
+	public long getMergedPackets() {
+		return BackPressure.getTotalMerged();
+	}
+	
+	/**
+	 * @return The number of held packets that were never sent.
+	 */
+	public long getDroppedPackets() {
+		return BackPressure.getTotalDropped();
+	}
+	
+	/**
+	 * @return The number of streams that were disconnected because they could not keep up.
+	 */
+	public long getSaturationDisconnects() {
+		return BackPressure.getTotalDisconnects();
+	}
+	
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+	
+	public NettyNetworkManager setFlushPolicy(FlushPolicy policy) {
+		Utils.assertNullArg(policy, "Cannot set a null flush policy.");
+		flushPolicy = policy;
+		if(policy == FlushPolicy.IMMEDIATE)
+			flushStreams();
+		return this;
+	}
+	
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+	
+	/**
+	 * Sets how many bytes may wait for the end of the tick before a stream is flushed early.
+	 * Only streams that connect afterwards use the new threshold.
+	 * @param bytes - The threshold in bytes.
+	 * @return This network manager.
+	 */
+	public NettyNetworkManager setFlushThreshold(int bytes) {
+		Utils.assertArg(bytes <= 0, "Cannot set a flush threshold that is not positive.");
+		flushThreshold = bytes;
+		return this;
+	}
+	
+	/**
+	 * @return true if streams should leave flushing to {@link #flushLater(NettyStream)}.
+	 */
+	final boolean isFlushDeferred() {
+		final GameEngine engine = tickEngine;
+		return flushPolicy == FlushPolicy.PER_TICK && engine != null && engine.isTicking();
+	}
+	
+	/**
+	 * Flushes the given stream in the next {@link TickPhase#OUTBOUND} phase.
+	 * @param stream - The stream with unflushed writes.
+	 */
+	final void flushLater(NettyStream stream) {
+		unflushedStreams.add(stream);
+	}
+	
+	/**
+	 * Flushes every stream that was written to since the last time.
+	 */
+	private void flushStreams() {
+		NettyStream stream;
+		while((stream = unflushedStreams.poll()) != null)
+			stream.flushWrites();
+	}
+	
 	protected final void doSetPacketStream(Packet packet, NetworkStream networkStream) {
 		setPacketStream(packet, networkStream);
 	}
 	
 	@Override
 	protected boolean doBind(String address, int port) {
-		bossGroup = new NioEventLoopGroup();
-		workerGroup = new NioEventLoopGroup();
+		final NettyTransport transport = getTransport().orFallback();
+		bossGroup = transport.createEventLoopGroup(bossThreads);
+		workerGroup = transport.createEventLoopGroup(workerThreads);
 		try {
 			bootstrap = new ServerBootstrap();
 			bootstrap.group(bossGroup, workerGroup)
-			.channel(NettyStreamServerChannel.class)
+			.channel(transport.getServerChannelClass())
 			.childHandler(channelInitializer)
 			.option(ChannelOption.SO_BACKLOG, 128)
-			.childOption(ChannelOption.SO_KEEPALIVE, true);
-
+			.childOption(ChannelOption.SO_KEEPALIVE, true)
+			.childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+			.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+			.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+			
 			// Bind and start to accept incoming connections.
 			ChannelFuture f = bootstrap.bind(address, port).sync();
 			
 			if(f.isSuccess()) {
 				manager = this;
+				boundTransport = transport;
+				final GameEngine engine = GameEngine.get();
+				if(engine != null && engine.isTicking()) {
+					tickEngine = engine;
+					engine.addTickTask(TickPhase.OUTBOUND, flushTask);
+				}
 			}
 			
 			return f.isSuccess();
-
+			
 		} catch(Exception e) {
 			e.printStackTrace();
 			shutdownAndWaitGroups();
@@ -131,6 +374,12 @@ public final class NettyNetworkManager extends NetworkManager {
 	
 	@Override
 	protected void doUnbind() {
+		final GameEngine engine = tickEngine;
+		if(engine != null) {
+			engine.removeTickTask(TickPhase.OUTBOUND, flushTask);
+			tickEngine = null;
+		}
+		flushStreams();
 		shutdownAndWaitGroups();
 	}
 	
@@ -153,6 +402,7 @@ public final class NettyNetworkManager extends NetworkManager {
 		bootstrap = null;
 		workerGroup = null;
 		bossGroup = null;
+		boundTransport = null;
 		return f1.isSuccess() && f2.isSuccess();
 	}
 	
@@ -162,14 +412,14 @@ public final class NettyNetworkManager extends NetworkManager {
 	}
 	
 	public NettyNetworkManager() {
-		streams = new HashSet<>();
+		streams = ConcurrentHashMap.newKeySet();
 		safeStreams = Collections.unmodifiableSet(streams);
 	}
-
+	
 	public NettyNetworkManager(NetworkStreamListener listener) {
 		super(listener);
-		streams = new HashSet<>();
+		streams = ConcurrentHashMap.newKeySet();
 		safeStreams = Collections.unmodifiableSet(streams);
 	}
-
+	
 }
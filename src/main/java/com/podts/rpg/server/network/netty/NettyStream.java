@@ -1,25 +1,42 @@
 package com.podts.rpg.server.network.netty;
 
 import java.net.InetAddress;
-import java.nio.channels.SocketChannel;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 
 import com.podts.rpg.server.Player;
+import com.podts.rpg.server.model.universe.Location;
 import com.podts.rpg.server.network.NetworkStream;
 import com.podts.rpg.server.network.Packet;
 
 import io.netty.channel.Channel;
-import io.netty.channel.ServerChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.AttributeKey;
 
-class NettyStream extends NioSocketChannel implements NetworkStream {
+/**
+ * The {@link NetworkStream} of a connected channel.
+ * The stream is attached to its channel, so it works with every transport of {@link NettyTransport}.
+ */
+final class NettyStream implements NetworkStream {
 	
 	private static KeyGenerator keyGenerator;
 	private static final int DEFAULT_FLAG_TOLERANCE = 20;
+	private static final AttributeKey<NettyStream> STREAM_KEY = AttributeKey.valueOf(NettyStream.class, "stream");
+	
+	/**
+	 * @return The stream of the given channel, or null if the channel has none.
+	 */
+	static NettyStream of(Channel channel) {
+		return channel.attr(STREAM_KEY).get();
+	}
 	
 	static {
 		try {
@@ -30,7 +47,19 @@ class NettyStream extends NioSocketChannel implements NetworkStream {
 		}
 	}
 	
+	private final Channel channel;
 	private final SecretKey secret;
+	private final AtomicBoolean unflushed = new AtomicBoolean();
+	private final BackPressure backPressure;
+	private volatile WireProtocol protocol = WireProtocol.LEGACY;
+	/**
+	 * The last location of every entity that was sent to this stream, only used by the encoder on the event loop.
+	 */
+	private final Map<Integer,Location> sentLocations = new HashMap<>();
+	/**
+	 * Encrypts with the secret key of this stream, only used by the encoder on the event loop.
+	 */
+	private Cipher cipher;
 	private int flags;
 	private int flagTolerance;
 	protected Player player;
@@ -73,30 +102,110 @@ class NettyStream extends NioSocketChannel implements NetworkStream {
 		this.player = player;
 	}
 	
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+	
+	BackPressure getBackPressure() {
+		return backPressure;
+	}
+	
+	WireProtocol getProtocol() {
+		return protocol;
+	}
+	
+	void setProtocol(WireProtocol protocol) {
+		this.protocol = protocol;
+	}
+	
+	Map<Integer,Location> getSentLocations() {
+		return sentLocations;
+	}
+	
+	/**
+	 * @return The cipher that encrypts with the secret key of this stream, created the first time it is needed.
+	 * @throws GeneralSecurityException If the cipher could not be created.
+	 */
+	Cipher getCipher() throws GeneralSecurityException {
+		if(cipher == null) {
+			final Cipher cipher = Cipher.getInstance("AES");
+			cipher.init(Cipher.ENCRYPT_MODE, secret);
+			this.cipher = cipher;
+		}
+		return cipher;
+	}
+	
+	/**
+	 * Drops the cipher of this stream after it failed, so the next packet starts from a fresh one.
+	 */
+	void resetCipher() {
+		cipher = null;
+	}
+	
 	@Override
 	public void sendPacket(Packet p) {
-		writeAndFlush(p);
+		if(backPressure.offer(p))
+			return;
+		channel.write(p);
+		onWrite();
 	}
 	
 	@Override
 	public void sendPacket(Packet... packets) {
-		for(Packet p : packets)
-			write(p);
-		flush();
+		boolean written = false;
+		for(Packet p : packets) {
+			if(!backPressure.offer(p)) {
+				channel.write(p);
+				written = true;
+			}
+		}
+		if(written)
+			onWrite();
+	}
+	
+	/**
+	 * Flushes right away, or leaves the flush to the end of the tick if the {@link NettyNetworkManager.FlushPolicy} defers flushes.
+	 */
+	private void onWrite() {
+		final NettyNetworkManager manager = NettyNetworkManager.get();
+		if(manager == null || !manager.isFlushDeferred())
+			channel.flush();
+		else if(unflushed.compareAndSet(false, true))
+			manager.flushLater(this);
+	}
+	
+	/**
+	 * Flushes the packets that were written since the last flush.
+	 */
+	void flushWrites() {
+		unflushed.set(false);
+		channel.flush();
 	}
 	
 	public final Channel getChannel() {
-		return this;
+		return channel;
 	}
 	
 	@Override
 	public InetAddress getAddress() {
-		return remoteAddress().getAddress();
+		return ((InetSocketAddress) channel.remoteAddress()).getAddress();
+	}
+	
+	@Override
+	public void setReading(boolean reading) {
+		channel.config().setAutoRead(reading);
+	}
+	
+	@Override
+	public boolean isSaturated() {
+		return backPressure.isHolding();
 	}
 	
 	@Override
 	public void closeStream() {
-		close();
+		channel.flush();
+		channel.close();
 	}
 	
 	@Override
@@ -104,14 +213,20 @@ class NettyStream extends NioSocketChannel implements NetworkStream {
 		return "[" + getAddress() + "]";
 	}
 	
-	NettyStream(ServerChannel sc, SocketChannel c, int flagTolerance) {
-		super(sc, c);
+	NettyStream(Channel channel, int flagTolerance, long maxSaturation) {
+		this.channel = channel;
 		secret = keyGenerator.generateKey();
 		this.flagTolerance = flagTolerance;
+		backPressure = new BackPressure(this, maxSaturation);
+		channel.attr(STREAM_KEY).set(this);
+	}
+	
+	NettyStream(Channel channel, long maxSaturation) {
+		this(channel, DEFAULT_FLAG_TOLERANCE, maxSaturation);
 	}
 	
-	NettyStream(ServerChannel sc, SocketChannel c) {
-		this(sc, c, DEFAULT_FLAG_TOLERANCE);
+	NettyStream(Channel channel) {
+		this(channel, BackPressure.DEFAULT_MAX_SATURATION);
 	}
 	
 }
@@ -0,0 +1,78 @@
+package com.podts.rpg.server.network.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * The ways the {@link NettyNetworkManager} can do socket IO.
+ */
+public enum NettyTransport {
+	
+	/**
+	 * Java NIO selectors, available everywhere.
+	 */
+	NIO() {
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+		@Override
+		EventLoopGroup createEventLoopGroup(int threads) {
+			return new NioEventLoopGroup(threads);
+		}
+		@Override
+		Class<? extends ServerChannel> getServerChannelClass() {
+			return NioServerSocketChannel.class;
+		}
+	},
+	
+	/**
+	 * Native Linux epoll, which has less overhead per event than NIO.
+	 */
+	EPOLL() {
+		@Override
+		public boolean isAvailable() {
+			return Epoll.isAvailable();
+		}
+		@Override
+		EventLoopGroup createEventLoopGroup(int threads) {
+			return new EpollEventLoopGroup(threads);
+		}
+		@Override
+		Class<? extends ServerChannel> getServerChannelClass() {
+			return EpollServerSocketChannel.class;
+		}
+	};
+	
+	/**
+	 * @return The fastest transport that is available on this machine.
+	 */
+	public static NettyTransport best() {
+		return EPOLL.isAvailable() ? EPOLL : NIO;
+	}
+	
+	/**
+	 * @return true if this transport can be used on this machine.
+	 */
+	public abstract boolean isAvailable();
+	
+	/**
+	 * @return This transport if it is available, otherwise {@link #NIO}.
+	 */
+	public NettyTransport orFallback() {
+		return isAvailable() ? this : NIO;
+	}
+	
+	/**
+	 * @param threads - The number of threads, 0 for the default of Netty which is twice the number of cores.
+	 */
+	abstract EventLoopGroup createEventLoopGroup(int threads);
+	
+	abstract Class<? extends ServerChannel> getServerChannelClass();
+	
+}
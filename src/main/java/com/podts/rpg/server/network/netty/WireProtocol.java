@@ -0,0 +1,43 @@
+package com.podts.rpg.server.network.netty;
+
+/**
+ * The formats a client can ask for at login.
+ * Clients that ask for nothing, like every client from before the formats were added, get {@link #LEGACY}.
+ */
+enum WireProtocol {
+	
+	/**
+	 * Entity IDs and locations are written as full ints.
+	 */
+	LEGACY(0),
+	
+	/**
+	 * Entity IDs and locations are written as varints,
+	 * and entity updates are written as the difference to the last location sent to the client.
+	 */
+	COMPACT(1);
+	
+	private static final WireProtocol[] protocols = values();
+	
+	/**
+	 * Picks the protocol to use for a client that asked for the given one.
+	 * @param id - The ID of the protocol the client asked for.
+	 * @return The protocol with the given ID, or the newest protocol the server knows if the client is newer.
+	 */
+	static WireProtocol negotiate(int id) {
+		if(id < 0)
+			return LEGACY;
+		return protocols[Math.min(id, protocols.length - 1)];
+	}
+	
+	private final int id;
+	
+	public int getID() {
+		return id;
+	}
+	
+	private WireProtocol(int id) {
+		this.id = id;
+	}
+	
+}
@@ -0,0 +1,71 @@
+package com.podts.rpg.server.network.packet;
+
+import com.podts.rpg.server.model.universe.Tile;
+import com.podts.rpg.server.network.Packet;
+
+/**
+ * Sends a whole chunk of tiles keyed by its chunk coordinate and version,
+ * or tells the client to drop a chunk from its cache.
+ */
+public final class ChunkPacket extends Packet {
+	
+	public enum ChunkUpdateType {
+		CREATE(),
+		DESTROY();
+	}
+	
+	private final ChunkUpdateType updateType;
+	private final int x, y, z;
+	private final long version;
+	private final Tile[][] tiles;
+	
+	public ChunkUpdateType getUpdateType() {
+		return updateType;
+	}
+	
+	public boolean isCreate() {
+		return ChunkUpdateType.CREATE.equals(updateType);
+	}
+	
+	public boolean isDestroy() {
+		return ChunkUpdateType.DESTROY.equals(updateType);
+	}
+	
+	public int getX() {
+		return x;
+	}
+	
+	public int getY() {
+		return y;
+	}
+	
+	public int getZ() {
+		return z;
+	}
+	
+	public long getVersion() {
+		return version;
+	}
+	
+	public Tile[][] getTiles() {
+		return tiles;
+	}
+	
+	public static final ChunkPacket constructCreate(int x, int y, int z, long version, Tile[][] tiles) {
+		return new ChunkPacket(ChunkUpdateType.CREATE, x, y, z, version, tiles);
+	}
+	
+	public static final ChunkPacket constructDestroy(int x, int y, int z) {
+		return new ChunkPacket(ChunkUpdateType.DESTROY, x, y, z, 0, null);
+	}
+	
+	ChunkPacket(ChunkUpdateType updateType, int x, int y, int z, long version, Tile[][] tiles) {
+		this.updateType = updateType;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.version = version;
+		this.tiles = tiles;
+	}
+	
+}
@@ -0,0 +1,98 @@
+package com.podts.rpg.server.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets whose width grows with the duration, like an HDR histogram.
+ * Durations below 128 nanoseconds are counted exactly, every larger duration is counted in a bucket
+ * less than 1/64th of its value wide, so percentiles are accurate to about 1.5% from nanoseconds up to hours.
+ * Recording never allocates or blocks and may happen from any thread.
+ */
+public final class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+	
+	/**
+	 * Durations above 2^42 nanoseconds (more than an hour) are counted as this duration.
+	 */
+	private static final long MAX_VALUE = (1L << 42) - 1;
+	
+	private static int index(long value) {
+		if(value < LINEAR_LIMIT)
+			return (int) value;
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+	
+	/**
+	 * @return The largest value that is counted in the bucket with the given index.
+	 */
+	private static long highestValue(int index) {
+		if(index < LINEAR_LIMIT)
+			return index;
+		final int shift = index / SUB_BUCKETS - 1;
+		final long lowest = (long) (index - shift * SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+	
+	private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+	private final AtomicLong count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+	
+	/**
+	 * Counts a duration.
+	 * @param nanos - The duration in nanoseconds, negative durations are counted as 0.
+	 */
+	public void record(long nanos) {
+		final long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value));
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public double getMean() {
+		final long n = getCount();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+	
+	/**
+	 * Returns the duration that the given fraction of the recorded durations are at most.
+	 * @param percentile - The percentile between 0 and 100.
+	 * @return The duration in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		final long n = getCount();
+		if(n == 0)
+			return 0;
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for(int i=0; i<counts.length(); ++i) {
+			seen += counts.get(i);
+			if(seen >= rank)
+				return Math.min(highestValue(i), getMax());
+		}
+		return getMax();
+	}
+	
+	public void reset() {
+		for(int i=0; i<counts.length(); ++i) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+	
+}
@@ -0,0 +1,242 @@
+package com.podts.rpg.server.utils;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An open addressing hash map that uses primitive longs as keys.
+ * Looking up a value never allocates, unlike a {@link java.util.HashMap} which needs a boxed key.
+ * This map is thread safe, lookups never block and may run while the map is being changed.
+ * Changes to the map are serialized on the map itself.
+ * Null values are not allowed.
+ * @param <V> - The type of the values.
+ */
+public final class LongKeyMap<V> {
+	
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	/**
+	 * Marks a slot whose mapping was removed.
+	 * A removed slot is never reused until the table is rebuilt,
+	 * so a concurrent reader can never pair a key with the value of another key.
+	 */
+	private static final Object REMOVED = new Object();
+	
+	/**
+	 * The key of a slot is always written before its value.
+	 * Readers read the value first so the volatile read guarantees that the key is visible.
+	 */
+	private static final class Table {
+		
+		private final long[] keys;
+		private final AtomicReferenceArray<Object> values;
+		private final int mask;
+		
+		private Table(final int capacity) {
+			keys = new long[capacity];
+			values = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+		}
+		
+	}
+	
+	private volatile Table table;
+	private volatile int size;
+	private int used;
+	
+	/**
+	 * Packs two ints into a single long key.
+	 * @param high - The int stored in the upper 32 bits.
+	 * @param low - The int stored in the lower 32 bits.
+	 * @return The packed key.
+	 */
+	public static long pack(final int high, final int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+	
+	public static int unpackHigh(final long key) {
+		return (int) (key >> 32);
+	}
+	
+	public static int unpackLow(final long key) {
+		return (int) key;
+	}
+	
+	/**
+	 * Returns a well distributed hash of the given key.
+	 * @param key - The key.
+	 * @return The hash of the key.
+	 */
+	public static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	/**
+	 * Returns the value that is mapped to the given key.
+	 * This never blocks.
+	 * @param key - The key of the value.
+	 * @return The value of the key or null if there is no mapping.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final long key) {
+		final Table t = table;
+		int i = hash(key) & t.mask;
+		Object value;
+		while((value = t.values.get(i)) != null) {
+			if(value != REMOVED && t.keys[i] == key)
+				return (V) value;
+			i = (i + 1) & t.mask;
+		}
+		return null;
+	}
+	
+	public boolean containsKey(final long key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * Maps the given value to the key.
+	 * @param key - The key.
+	 * @param value - The non null value.
+	 * @return The value that was previously mapped to the key or null if there was none.
+	 */
+	public synchronized V put(final long key, final V value) {
+		return doPut(key, value, false);
+	}
+	
+	/**
+	 * Maps the given value to the key only if the key has no value yet.
+	 * @param key - The key.
+	 * @param value - The non null value.
+	 * @return The value that is already mapped to the key or null if the given value was added.
+	 */
+	public synchronized V putIfAbsent(final long key, final V value) {
+		return doPut(key, value, true);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private V doPut(final long key, final V value, final boolean onlyIfAbsent) {
+		Objects.requireNonNull(value, "Cannot put a null value into a LongKeyMap!");
+		final Table t = table;
+		int i = hash(key) & t.mask;
+		Object old;
+		while((old = t.values.get(i)) != null) {
+			if(old != REMOVED && t.keys[i] == key) {
+				if(!onlyIfAbsent)
+					t.values.set(i, value);
+				return (V) old;
+			}
+			i = (i + 1) & t.mask;
+		}
+		t.keys[i] = key;
+		t.values.set(i, value);
+		++size;
+		if(++used * 2 > t.keys.length)
+			rebuild(size * 4);
+		return null;
+	}
+	
+	/**
+	 * Removes the mapping of the given key.
+	 * @param key - The key to remove.
+	 * @return The value that was mapped to the key or null if there was none.
+	 */
+	public synchronized V remove(final long key) {
+		return doRemove(key, null);
+	}
+	
+	/**
+	 * Removes the mapping of the given key only if it is currently mapped to the given value.
+	 * @param key - The key to remove.
+	 * @param value - The value the key must be mapped to.
+	 * @return true if the mapping was removed, false otherwise.
+	 */
+	public synchronized boolean remove(final long key, final V value) {
+		Objects.requireNonNull(value);
+		return doRemove(key, value) != null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private V doRemove(final long key, final V expected) {
+		final Table t = table;
+		int i = hash(key) & t.mask;
+		Object value;
+		while((value = t.values.get(i)) != null) {
+			if(value != REMOVED && t.keys[i] == key) {
+				if(expected != null && expected != value)
+					return null;
+				t.values.set(i, REMOVED);
+				--size;
+				return (V) value;
+			}
+			i = (i + 1) & t.mask;
+		}
+		return null;
+	}
+	
+	public synchronized void clear() {
+		table = new Table(table.keys.length);
+		size = 0;
+		used = 0;
+	}
+	
+	/**
+	 * Returns a Stream of all values in this map.
+	 * The Stream is weakly consistent, it may or may not reflect changes made after it was created.
+	 * @return Stream of all values.
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<V> values() {
+		final Table t = table;
+		return IntStream.range(0, t.keys.length)
+				.mapToObj(t.values::get)
+				.filter(v -> v != null && v != REMOVED)
+				.map(v -> (V) v);
+	}
+	
+	/**
+	 * Copies every mapping into a new table, dropping all removed slots.
+	 */
+	private void rebuild(final int minCapacity) {
+		final Table old = table;
+		final Table t = new Table(capacityFor(minCapacity));
+		for(int j=0; j<old.keys.length; ++j) {
+			final Object value = old.values.get(j);
+			if(value == null || value == REMOVED)
+				continue;
+			int i = hash(old.keys[j]) & t.mask;
+			while(t.values.get(i) != null)
+				i = (i + 1) & t.mask;
+			t.keys[i] = old.keys[j];
+			t.values.set(i, value);
+		}
+		used = size;
+		table = t;
+	}
+	
+	private static int capacityFor(final int minCapacity) {
+		return Integer.highestOneBit(Math.max(minCapacity, DEFAULT_CAPACITY) - 1) << 1;
+	}
+	
+	public LongKeyMap(final int expectedSize) {
+		table = new Table(capacityFor(expectedSize * 2));
+	}
+	
+	public LongKeyMap() {
+		this(DEFAULT_CAPACITY / 2);
+	}
+	
+}
@@ -0,0 +1,140 @@
+package com.podts.rpg.server;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import javax.crypto.SecretKey;
+
+import com.podts.rpg.server.model.entity.EntityFactory;
+import com.podts.rpg.server.model.entity.PlayerEntity;
+import com.podts.rpg.server.model.universe.Location;
+import com.podts.rpg.server.network.NetworkStream;
+import com.podts.rpg.server.network.Packet;
+
+/**
+ * A {@link NetworkStream} that keeps every packet sent to it, used to create players in tests.
+ */
+public final class RecordingStream implements NetworkStream {
+	
+	private static int nextID = 1000000;
+	
+	/**
+	 * Creates a player with an entity at the given location whose packets are recorded.
+	 * The entity is not registered with any world.
+	 * @param name - The name of the player.
+	 * @param location - The location of the entity of the player.
+	 * @return The stream of the new player.
+	 */
+	public static synchronized RecordingStream createPlayer(String name, Location location) {
+		Player player = new Player(nextID++, name, "");
+		RecordingStream stream = new RecordingStream();
+		player.setStream(stream);
+		stream.setPlayer(player);
+		player.setEntity(EntityFactory.constructPlayerEntity(player, location));
+		return stream;
+	}
+	
+	private final List<Packet> packets = new CopyOnWriteArrayList<>();
+	private Player player;
+	private volatile boolean open = true, reading = true, saturated;
+	
+	public PlayerEntity getEntity() {
+		return getPlayer().getEntity();
+	}
+	
+	public List<Packet> getPackets() {
+		return packets;
+	}
+	
+	public <T extends Packet> Stream<T> packets(Class<T> type) {
+		return packets.stream()
+				.filter(type::isInstance)
+				.map(type::cast);
+	}
+	
+	public void clear() {
+		packets.clear();
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+	
+	@Override
+	public void closeStream() {
+		open = false;
+	}
+	
+	public boolean isReading() {
+		return reading;
+	}
+	
+	@Override
+	public void setReading(boolean reading) {
+		this.reading = reading;
+	}
+	
+	@Override
+	public boolean isSaturated() {
+		return saturated;
+	}
+	
+	public void setSaturated(boolean saturated) {
+		this.saturated = saturated;
+	}
+	
+	@Override
+	public InetAddress getAddress() {
+		return InetAddress.getLoopbackAddress();
+	}
+	
+	@Override
+	public int getPing() {
+		return 0;
+	}
+	
+	@Override
+	public Player getPlayer() {
+		return player;
+	}
+	
+	@Override
+	public void setPlayer(Player player) {
+		this.player = player;
+	}
+	
+	@Override
+	public SecretKey getSecretKey() {
+		return null;
+	}
+	
+	@Override
+	public void sendPacket(Packet p) {
+		packets.add(p);
+	}
+	
+	@Override
+	public void sendPacket(Packet... packets) {
+		for(Packet p : packets)
+			sendPacket(p);
+	}
+	
+	@Override
+	public int getFlagTolerance() {
+		return 0;
+	}
+	
+	@Override
+	public int getFlags() {
+		return 0;
+	}
+	
+	@Override
+	public NetworkStream flag(int severity) {
+		return this;
+	}
+	
+}
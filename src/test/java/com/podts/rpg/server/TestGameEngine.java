@@ -0,0 +1,91 @@
+package com.podts.rpg.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.GameEngine.TickPhase;
+
+public class TestGameEngine {
+	
+	@Test
+	public void testPhasesRunInOrder() {
+		
+		GameEngine engine = new GameEngine(1, GameEngine.DEFAULT_TICK_PERIOD);
+		List<TickPhase> ran = new ArrayList<>();
+		engine.addTickTask(TickPhase.OUTBOUND, () -> ran.add(TickPhase.OUTBOUND));
+		engine.defer(TickPhase.REGIONS, () -> ran.add(TickPhase.REGIONS));
+		engine.defer(TickPhase.INBOUND, () -> {
+			ran.add(TickPhase.INBOUND);
+			//Deferred to a later phase of the same tick.
+			engine.defer(TickPhase.SIMULATE, () -> ran.add(TickPhase.SIMULATE));
+			//Deferred to the phase that is running, so it waits for the next tick.
+			engine.defer(TickPhase.INBOUND, () -> ran.add(TickPhase.INBOUND));
+		});
+		
+		engine.tick();
+		assertEquals(Arrays.asList(TickPhase.values()), ran);
+		
+		ran.clear();
+		engine.tick();
+		assertEquals(Arrays.asList(TickPhase.INBOUND, TickPhase.OUTBOUND), ran);
+		assertEquals(2, engine.getTickCount());
+		engine.shutdown();
+		
+	}
+	
+	@Test
+	public void testDeferredTasksRunOnTheTickThread() throws InterruptedException {
+		
+		GameEngine engine = new GameEngine(1, GameEngine.DEFAULT_TICK_PERIOD);
+		List<String> ran = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		engine.addTickTask(TickPhase.INBOUND, () -> {
+			ran.add("packet");
+			threads.add(Thread.currentThread());
+			//A packet moved an entity, its listeners wait for the region phase.
+			engine.defer(TickPhase.REGIONS, () -> {
+				ran.add("region " + engine.isTickThread());
+				threads.add(Thread.currentThread());
+			});
+		});
+		engine.addTickTask(TickPhase.SIMULATE, () -> ran.add("simulate"));
+		
+		Thread ticker = new Thread(engine::tick);
+		ticker.start();
+		ticker.join();
+		
+		assertEquals(Arrays.asList("packet", "simulate", "region true"), ran);
+		assertEquals(Arrays.asList(ticker, ticker), threads);
+		engine.shutdown();
+		
+	}
+	
+	@Test
+	public void testTickDurationIsMeasured() {
+		
+		GameEngine engine = new GameEngine(1, TimeUnit.MILLISECONDS.toNanos(5));
+		engine.defer(TickPhase.SIMULATE, () -> {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {}
+		});
+		engine.defer(TickPhase.INBOUND, () -> {
+			throw new IllegalStateException("Failing tasks do not stop the tick.");
+		});
+		
+		engine.tick();
+		assertTrue(engine.getLastPhaseDuration(TickPhase.SIMULATE, TimeUnit.MILLISECONDS) >= 10);
+		assertTrue(engine.getLastTickDuration(TimeUnit.MILLISECONDS) >= 10);
+		assertEquals(1, engine.getOverrunCount());
+		engine.shutdown();
+		
+	}
+	
+}
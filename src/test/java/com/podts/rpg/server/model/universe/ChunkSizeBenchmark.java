@@ -0,0 +1,109 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.entity.PlayerEntity;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+
+/**
+ * Compares chunk sizes of a {@link StaticChunkWorld} for the work a player causes in each {@link BenchmarkWorld}.
+ * <ul>
+ * <li>movement - Moving a registered player one tile, which crosses chunks, moves subscriptions and prefetches along the way.</li>
+ * <li>view - Collecting every tile in the default view distance.</li>
+ * <li>generation - Generating a fresh 128 by 128 area of tiles.</li>
+ * </ul>
+ * Run with the main method of this class from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkSizeBenchmark {
+	
+	private static final int WALK_RANGE = 100;
+	private static final int GENERATION_AREA = 128;
+	
+	@Param({"16", "25", "32", "64"})
+	public int chunkSize;
+	
+	@Param({"FLAT", "TERRAIN"})
+	public BenchmarkWorld terrain;
+	
+	private StaticChunkWorld world;
+	private RecordingStream walker;
+	private int walkDirection;
+	private int generatedAreas;
+	
+	@Setup(Level.Iteration)
+	public void setup() {
+		world = terrain.create(chunkSize);
+		walkDirection = 1;
+		generatedAreas = 0;
+		//Generate everything the movement and view benchmarks touch up front.
+		world.nearbyTiles(world.getOrigin(), WALK_RANGE + PlayerEntity.DEFAULT_VIEW_DISTANCE).count();
+		walker = RecordingStream.createPlayer("walker", world.getOrigin());
+		world.doRegister(walker.getEntity());
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		//Stops the generation and saving threads of the world.
+		world.onDelete();
+	}
+	
+	@Benchmark
+	public Location movement() {
+		final PlayerEntity entity = walker.getEntity();
+		if(Math.abs(entity.getLocation().getX() + walkDirection) > WALK_RANGE)
+			walkDirection = -walkDirection;
+		world.moveEntity(entity, entity.getLocation().shift(walkDirection, 0), MoveType.UPDATE);
+		walker.clear();
+		return entity.getLocation();
+	}
+	
+	@Benchmark
+	public long view() {
+		return world.nearbyTiles(walker.getEntity(), PlayerEntity.DEFAULT_VIEW_DISTANCE).count();
+	}
+	
+	@Benchmark
+	public int generation() {
+		final int top = (WALK_RANGE + PlayerEntity.DEFAULT_VIEW_DISTANCE) * 2 + GENERATION_AREA * generatedAreas++;
+		int generated = 0;
+		for(int y=top; y<top + GENERATION_AREA; y+=chunkSize) {
+			for(int x=0; x<GENERATION_AREA; x+=chunkSize) {
+				world.findChunk(x, y, 0).generate();
+				++generated;
+			}
+		}
+		return generated;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ChunkSizeBenchmark.class.getSimpleName())
+				.build())
+		.run();
+	}
+	
+}
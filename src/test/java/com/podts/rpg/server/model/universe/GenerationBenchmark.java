@@ -0,0 +1,75 @@
+package com.podts.rpg.server.model.universe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares generating a chunk of {@link BenchmarkWorld#TERRAIN} one tile at a time with generating it as a rectangle.
+ * <ul>
+ * <li>tiles - Generating every tile from its own Location.</li>
+ * <li>rect - Generating the types of the whole chunk at once.</li>
+ * </ul>
+ * Run with the main method of this class from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+	
+	@Param({"25", "64"})
+	public int chunkSize;
+	
+	private WorldGenerator generator;
+	private Location origin;
+	private byte[] types;
+	private int chunk;
+	
+	@Setup
+	public void setup() {
+		generator = BenchmarkWorld.TERRAIN.createGenerator();
+		origin = BenchmarkWorld.TERRAIN.create().getOrigin().getTile().getLocation();
+		types = new byte[chunkSize * chunkSize];
+	}
+	
+	@Benchmark
+	public byte[] tiles() {
+		final int left = chunkSize * chunk++;
+		for(int j=0; j<chunkSize; ++j) {
+			for(int i=0; i<chunkSize; ++i) {
+				types[j * chunkSize + i] = (byte) generator.generateTile(origin.shift(left + i, j)).getType().ordinal();
+			}
+		}
+		return types;
+	}
+	
+	@Benchmark
+	public byte[] rect() {
+		generator.generateRect(chunkSize * chunk++, 0, 0, chunkSize, chunkSize, types);
+		return types;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(GenerationBenchmark.class.getSimpleName())
+				.build())
+		.run();
+	}
+	
+}
@@ -0,0 +1,45 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+
+public class TestBenchmarkWorlds {
+	
+	private static long checksum(StaticChunkWorld world) {
+		CRC32 crc = new CRC32();
+		for(int cx=-3; cx<=3; ++cx) {
+			for(int cy=-3; cy<=3; ++cy) {
+				Chunk chunk = world.findChunkAt(cx, cy, 0).generate();
+				for(int y=0; y<chunk.chunkSize(); ++y) {
+					for(int x=0; x<chunk.chunkSize(); ++x) {
+						crc.update(chunk.getType(x, y).ordinal());
+					}
+				}
+			}
+		}
+		return crc.getValue();
+	}
+	
+	@Test
+	public void testWorldsAreIdenticalEveryRun() {
+		
+		for(BenchmarkWorld world : BenchmarkWorld.values()) {
+			assertEquals(checksum(world.create()), checksum(world.create()));
+		}
+		assertNotEquals(checksum(BenchmarkWorld.TERRAIN.create()), checksum(BenchmarkWorld.TERRAIN_ALTERNATE.create()));
+		
+	}
+	
+	@Test
+	public void testTerrainIsUnchanged() {
+		//If this changes, benchmark results from before the change are not comparable anymore.
+		assertEquals(262814195L, checksum(BenchmarkWorld.TERRAIN.create()));
+	}
+	
+}
@@ -0,0 +1,178 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.model.universe.region.RectangularRegion.Corner;
+
+public class TestChunkConcurrency {
+	
+	private static final int THREADS = 16;
+	private static final int RADIUS = 12;
+	
+	private static final class CountingGenerator extends WorldGenerator {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		protected TileElement doGenerateTile(Location point) {
+			count.incrementAndGet();
+			return constructElement(TileType.DIRT);
+		}
+		
+	}
+	
+	private static long key(Chunk chunk) {
+		Location corner = chunk.getCorner(Corner.TOP_LEFT);
+		return ((long) corner.getX() << 32) | (corner.getY() & 0xFFFFFFFFL);
+	}
+	
+	private static void runAll(List<Runnable> tasks) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for(Runnable task : tasks) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					task.run();
+					return null;
+				}));
+			}
+			start.countDown();
+			for(Future<?> f : futures)
+				f.get();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testConcurrentFindChunk() throws Exception {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		ConcurrentMap<Long,Chunk> seen = new ConcurrentHashMap<>();
+		
+		List<Runnable> tasks = new ArrayList<>();
+		for(int t=0; t<THREADS; ++t) {
+			final Random random = new Random(t);
+			tasks.add(() -> {
+				for(int i=0; i<5000; ++i) {
+					int x = (random.nextInt(RADIUS * 2 + 1) - RADIUS) * 16 + random.nextInt(16);
+					int y = (random.nextInt(RADIUS * 2 + 1) - RADIUS) * 16 + random.nextInt(16);
+					Chunk chunk = world.findChunk(x, y, 0);
+					Chunk previous = seen.putIfAbsent(key(chunk), chunk);
+					if(previous != null)
+						assertSame(previous, chunk);
+				}
+			});
+		}
+		runAll(tasks);
+		
+		assertEquals(seen.size(), world.chunks().count());
+		world.chunks()
+		.forEach(c -> assertSame(c, seen.get(key(c))));
+		
+	}
+	
+	@Test
+	public void testConcurrentGenerate() throws Exception {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		
+		List<Runnable> tasks = new ArrayList<>();
+		for(int t=0; t<THREADS; ++t) {
+			final int offset = t;
+			tasks.add(() -> {
+				for(int i=0; i<RADIUS * RADIUS; ++i) {
+					int n = (i + offset) % (RADIUS * RADIUS);
+					world.findChunk(n % RADIUS * 16, n / RADIUS * 16, 0).generate();
+				}
+			});
+		}
+		runAll(tasks);
+		
+		world.chunks()
+		.forEach(c -> {
+			for(int y=0; y<c.chunkSize(); ++y)
+				for(int x=0; x<c.chunkSize(); ++x)
+					assertEquals(TileType.GRASS, c.getType(x, y));
+		});
+		
+	}
+	
+	@Test
+	public void testGenerateAsyncOnce() throws Exception {
+		
+		CountingGenerator generator = new CountingGenerator();
+		StaticChunkWorld world = new StaticChunkWorld("Earth", generator);
+		ConcurrentMap<Chunk,CompletableFuture<Chunk>> futures = new ConcurrentHashMap<>();
+		
+		List<Runnable> tasks = new ArrayList<>();
+		for(int t=0; t<THREADS; ++t) {
+			tasks.add(() -> {
+				for(int i=0; i<RADIUS; ++i) {
+					Chunk chunk = world.findChunk(i * 16, 0, 0);
+					futures.putIfAbsent(chunk, chunk.generateAsync());
+					chunk.generateAsync().join();
+				}
+			});
+		}
+		runAll(tasks);
+		
+		for(CompletableFuture<Chunk> f : futures.values()) {
+			Chunk chunk = f.get();
+			assertTrue(chunk.isGenerated());
+			assertEquals(TileType.DIRT, chunk.getType(0, 0));
+		}
+		int tilesPerChunk = futures.keySet().iterator().next().chunkSize();
+		tilesPerChunk *= tilesPerChunk;
+		assertEquals(futures.size() * tilesPerChunk, generator.count.get());
+		
+	}
+	
+	@Test
+	public void testGetTilesOnGeneratorThreads() throws Exception {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		int workers = Runtime.getRuntime().availableProcessors();
+		
+		//Every worker asks for tiles of chunks that can only be generated by the workers themselves.
+		List<CompletableFuture<Tile[][]>> futures = new ArrayList<>();
+		for(int t=0; t<workers; ++t) {
+			final int offset = t * 1000;
+			futures.add(world.findChunk(offset, 1000, 0).generateAsync()
+					.thenApply(c -> {
+						Tile[][] tiles = new Tile[RADIUS * 16][RADIUS * 16];
+						world.getTiles(tiles, world.createLocation(offset, 0, 0));
+						return tiles;
+					}));
+		}
+		
+		for(CompletableFuture<Tile[][]> f : futures) {
+			Tile[][] tiles = f.get(30, TimeUnit.SECONDS);
+			assertEquals(TileType.GRASS, tiles[RADIUS * 16 - 1][RADIUS * 16 - 1].getType());
+		}
+		
+	}
+	
+}
@@ -0,0 +1,125 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.model.universe.storage.RegionFileStorage;
+
+public class TestChunkEviction {
+	
+	private static final int CHUNKS = 10;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static StaticChunkWorld createWorld() {
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		for(int i=0; i<CHUNKS; ++i)
+			world.findChunk(i * 100, 0, 0).generate();
+		return world;
+	}
+	
+	@Test
+	public void testIdleEviction() {
+		
+		StaticChunkWorld world = createWorld();
+		Chunk chunk = world.findChunk(0, 0, 0);
+		
+		assertEquals(0, world.evictChunks(Long.MAX_VALUE, Long.MAX_VALUE));
+		assertEquals(CHUNKS, world.evictChunks(0, Long.MAX_VALUE));
+		assertEquals(0, world.chunks().count());
+		
+		assertTrue(chunk.isUnloaded());
+		Chunk reloaded = world.findChunk(0, 0, 0);
+		assertNotSame(chunk, reloaded);
+		assertFalse(reloaded.isUnloaded());
+		
+	}
+	
+	@Test
+	public void testDirtyChunksAreKept() {
+		
+		StaticChunkWorld world = createWorld();
+		Chunk chunk = world.findChunk(0, 0, 0);
+		world.setTile(chunk.getTile(0, 0), TileType.WATER);
+		
+		assertTrue(chunk.isDirty());
+		long loaded = world.chunks().count();
+		assertEquals(loaded - 1, world.evictChunks(0, Long.MAX_VALUE));
+		assertSame(chunk, world.findChunk(0, 0, 0));
+		assertEquals(TileType.WATER, chunk.getType(0, 0));
+		
+	}
+	
+	@Test
+	public void testMemoryBudget() {
+		
+		StaticChunkWorld world = createWorld();
+		long perChunk = world.findChunk(0, 0, 0).estimateMemory();
+		
+		assertEquals(CHUNKS - 4, world.evictChunks(Long.MAX_VALUE, perChunk * 4));
+		assertEquals(4, world.chunks().count());
+		
+	}
+	
+	@Test
+	public void testDirtyChunksAreSaved() throws Exception {
+		
+		StaticChunkWorld world = createWorld();
+		world.setStorage(new RegionFileStorage(folder.getRoot().toPath()));
+		Chunk chunk = world.findChunk(0, 0, 0);
+		world.setTile(chunk.getTile(3, 4), TileType.WATER);
+		
+		long loaded = world.chunks().count();
+		assertEquals(loaded, world.evictChunks(0, Long.MAX_VALUE));
+		assertTrue(chunk.isUnloaded());
+		
+		Chunk reloaded = world.findChunk(0, 0, 0).generate();
+		assertNotSame(chunk, reloaded);
+		assertFalse(reloaded.isDirty());
+		assertEquals(TileType.WATER, reloaded.getType(3, 4));
+		assertEquals(TileType.GRASS, reloaded.getType(4, 4));
+		world.getStorage().close();
+		
+	}
+	
+	@Test
+	public void testWriteBehindCoalescesEdits() throws Exception {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		world.setStorage(new RegionFileStorage(folder.getRoot().toPath()));
+		ChunkSaver saver = world.getChunkSaver();
+		
+		Chunk chunk = world.findChunk(0, 0, 0).generate();
+		int queued = saver.getQueuedCount();
+		for(int i=0; i<5; ++i)
+			world.setTile(chunk.getTile(i, 0), TileType.SAND);
+		assertEquals(queued, saver.getQueuedCount());
+		
+		assertEquals(queued, saver.flush());
+		assertFalse(chunk.isDirty());
+		assertEquals(0, saver.getQueuedCount());
+		
+		world.setTile(chunk.getTile(0, 1), TileType.SAND);
+		assertEquals(1, saver.getQueuedCount());
+		assertEquals(1, saver.flush());
+		
+		assertEquals(world.chunks().count(), world.evictChunks(0, Long.MAX_VALUE));
+		Chunk reloaded = world.findChunk(0, 0, 0).generate();
+		assertEquals(TileType.SAND, reloaded.getType(4, 0));
+		assertEquals(TileType.SAND, reloaded.getType(0, 1));
+		world.getStorage().close();
+		
+	}
+	
+}
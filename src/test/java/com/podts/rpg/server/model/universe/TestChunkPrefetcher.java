@@ -0,0 +1,114 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.entity.PlayerEntity;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+
+public class TestChunkPrefetcher {
+	
+	private static final int CHUNK_SIZE = 16;
+	
+	private static final class CountingGenerator extends WorldGenerator {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		protected TileElement doGenerateTile(Location point) {
+			count.incrementAndGet();
+			return constructElement(TileType.GRASS);
+		}
+		
+	}
+	
+	private final CountingGenerator generator = new CountingGenerator();
+	private final StaticChunkWorld world = new StaticChunkWorld("Earth", CHUNK_SIZE, generator);
+	private final RecordingStream stream = RecordingStream.createPlayer("a", world.getOrigin());
+	
+	private Chunk center() {
+		Location point = stream.getEntity().getLocation();
+		return world.findChunk(point.getX(), point.getY(), point.getZ());
+	}
+	
+	private int viewDepth() {
+		return (int) Math.ceil(stream.getEntity().getViewingDistance() / CHUNK_SIZE);
+	}
+	
+	private boolean hasColumn(int cx) {
+		int cy = center().chunkY(), depth = viewDepth();
+		for(int y=cy-depth; y<=cy+depth; ++y) {
+			final int row = y;
+			if(world.chunks().noneMatch(c -> c.chunkX() == cx && c.chunkY() == row))
+				return false;
+		}
+		return true;
+	}
+	
+	private boolean hasAnyInColumn(int cx) {
+		return world.chunks().anyMatch(c -> c.chunkX() == cx);
+	}
+	
+	private void moveChunks(int chunks) {
+		PlayerEntity pE = stream.getEntity();
+		world.moveEntity(pE, pE.getLocation().shift(chunks * CHUNK_SIZE, 0), MoveType.UPDATE);
+	}
+	
+	@Test
+	public void testMovingRequestsChunksAhead() {
+		
+		world.doRegister(stream.getEntity());
+		int start = center().chunkX(), depth = viewDepth();
+		assertFalse(hasAnyInColumn(start + depth + 1));
+		
+		moveChunks(1);
+		assertTrue(hasColumn(start + 1 + depth + 1));
+		assertTrue(hasColumn(start + 1 + depth + 2));
+		moveChunks(1);
+		assertTrue(hasColumn(start + 2 + depth + 2));
+		//Nothing is prefetched behind the player.
+		assertFalse(hasAnyInColumn(start - depth - 1));
+		
+		//Chunks that were requested by several moves are generated once.
+		world.chunks().forEach(c -> c.generateAsync().join());
+		assertEquals(world.chunks().count() * CHUNK_SIZE * CHUNK_SIZE, generator.count.get());
+		
+	}
+	
+	@Test
+	public void testTurningAroundStopsPrefetching() {
+		
+		world.doRegister(stream.getEntity());
+		int start = center().chunkX(), depth = viewDepth();
+		
+		moveChunks(1);
+		moveChunks(-1);
+		//A single step back is not enough of a heading to prefetch in the new direction.
+		assertFalse(hasAnyInColumn(start - depth - 1));
+		
+	}
+	
+	@Test
+	public void testTeleportStopsPrefetching() {
+		
+		world.doRegister(stream.getEntity());
+		int start = center().chunkX(), depth = viewDepth();
+		
+		moveChunks(1);
+		moveChunks(10);
+		assertFalse(hasAnyInColumn(start + 11 + depth + 1));
+		moveChunks(1);
+		//After a teleport the heading starts over.
+		assertTrue(hasColumn(start + 12 + depth + 2));
+		
+	}
+	
+}
@@ -0,0 +1,150 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.StreamMode;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.network.packet.ChunkPacket;
+import com.podts.rpg.server.network.packet.TilePacket;
+
+public class TestChunkStreaming {
+	
+	private static long chunksSent(RecordingStream stream) {
+		final long result = stream.packets(ChunkPacket.class)
+				.filter(ChunkPacket::isCreate)
+				.count();
+		stream.clear();
+		return result;
+	}
+	
+	@Test
+	public void testOnlyMissingOrChangedChunksAreSent() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS))
+				.setStreamMode(StreamMode.CHUNKS);
+		//Generate everything up front so chunks are sent right away instead of in the background.
+		for(int cx=-6; cx<=6; ++cx) {
+			for(int cy=-6; cy<=6; ++cy) {
+				world.findChunk(cx * 25, cy * 25, 0).generate();
+			}
+		}
+		Location origin = world.getOrigin();
+		RecordingStream stream = RecordingStream.createPlayer("a", origin);
+		world.doRegister(stream.getEntity());
+		//The default view distance of 100 is 4 chunks in every direction.
+		assertEquals(81, chunksSent(stream));
+		assertEquals(0, stream.packets(TilePacket.class).count());
+		
+		world.moveEntity(stream.getEntity(), origin.shift(1, 0), MoveType.UPDATE);
+		assertEquals(0, chunksSent(stream));
+		
+		world.moveEntity(stream.getEntity(), origin.shift(25, 0), MoveType.UPDATE);
+		assertEquals(9, chunksSent(stream));
+		
+		world.moveEntity(stream.getEntity(), origin, MoveType.UPDATE);
+		assertEquals(0, chunksSent(stream));
+		
+		world.setTile(world.findChunk(-75, 0, 0).getTile(0, 0), TileType.WATER);
+		world.moveEntity(stream.getEntity(), origin.shift(25, 0), MoveType.UPDATE);
+		assertEquals(1, chunksSent(stream));
+		world.moveEntity(stream.getEntity(), origin, MoveType.UPDATE);
+		assertEquals(0, chunksSent(stream));
+		
+	}
+	
+	private static boolean received(RecordingStream stream, Chunk chunk, boolean create) {
+		return stream.packets(ChunkPacket.class)
+				.anyMatch(p -> p.isCreate() == create && p.getX() == chunk.chunkX() && p.getY() == chunk.chunkY());
+	}
+	
+	@Test
+	public void testChangedChunksAreRefreshedForEveryClientHoldingThem() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS))
+				.setStreamMode(StreamMode.CHUNKS);
+		for(int cx=-10; cx<=10; ++cx) {
+			for(int cy=-6; cy<=6; ++cy) {
+				world.findChunk(cx * 25, cy * 25, 0).generate();
+			}
+		}
+		Location origin = world.getOrigin();
+		RecordingStream stream = RecordingStream.createPlayer("a", origin);
+		world.doRegister(stream.getEntity());
+		stream.clear();
+		
+		//In view but outside of the chunks the player is subscribed to.
+		Chunk far = world.findChunk(-75, 0, 0);
+		world.setTile(far.getTile(0, 0), TileType.WATER);
+		world.getTileChangeBroadcaster().flush();
+		assertTrue(received(stream, far, true));
+		assertEquals(TileType.WATER, stream.packets(ChunkPacket.class)
+				.filter(p -> p.getX() == far.chunkX())
+				.findFirst().get().getTiles()[0][0].getType());
+		stream.clear();
+		
+		//A subscribed chunk gets its tiles, and the client is current without being sent the chunk again.
+		Chunk near = world.findChunk(0, 0, 0);
+		world.setTile(near.getTile(1, 1), TileType.WATER);
+		world.getTileChangeBroadcaster().flush();
+		assertEquals(0, chunksSent(stream));
+		world.moveEntity(stream.getEntity(), origin.shift(25, 0), MoveType.UPDATE);
+		assertEquals(9, chunksSent(stream));
+		
+		//Out of view the cached chunk is dropped, and sent again once it is back in view.
+		world.moveEntity(stream.getEntity(), origin.shift(150, 0), MoveType.UPDATE);
+		stream.clear();
+		world.setTile(far.getTile(0, 0), TileType.SAND);
+		world.getTileChangeBroadcaster().flush();
+		assertTrue(received(stream, far, false));
+		assertEquals(0, chunksSent(stream));
+		world.moveEntity(stream.getEntity(), origin, MoveType.UPDATE);
+		assertTrue(received(stream, far, true));
+		
+	}
+	
+	@Test
+	public void testSaturatedClientsCatchUpOnResume() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS))
+				.setStreamMode(StreamMode.CHUNKS);
+		for(int cx=-10; cx<=10; ++cx) {
+			for(int cy=-6; cy<=6; ++cy) {
+				world.findChunk(cx * 25, cy * 25, 0).generate();
+			}
+		}
+		Location origin = world.getOrigin();
+		RecordingStream stream = RecordingStream.createPlayer("a", origin);
+		world.doRegister(stream.getEntity());
+		stream.clear();
+		
+		//Nothing is streamed while saturated, neither new chunks nor changes.
+		stream.setSaturated(true);
+		Chunk left = world.findChunk(-100, 0, 0);
+		world.setTile(left.getTile(0, 0), TileType.WATER);
+		world.getTileChangeBroadcaster().flush();
+		world.moveEntity(stream.getEntity(), origin.shift(25, 0), MoveType.UPDATE);
+		assertEquals(0, stream.packets(ChunkPacket.class).count());
+		stream.clear();
+		
+		//The new chunks in view are sent and the changed chunk that left the view is dropped.
+		stream.setSaturated(false);
+		world.resumeStreaming(stream.getPlayer(), false);
+		assertTrue(received(stream, left, false));
+		assertEquals(9, chunksSent(stream));
+		
+		//After dropped chunks every chunk in view is sent again.
+		world.resumeStreaming(stream.getPlayer(), true);
+		assertEquals(81, chunksSent(stream));
+		world.resumeStreaming(stream.getPlayer(), false);
+		assertEquals(0, stream.getPackets().size());
+		
+	}
+	
+}
@@ -0,0 +1,65 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.Player;
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.network.packet.EntityPacket;
+import com.podts.rpg.server.network.packet.EntityPacket.UpdateType;
+
+public class TestChunkSubscriptions {
+	
+	private static Set<Player> nearby(World world, Location point) {
+		return world.nearbyPlayers(point)
+				.collect(Collectors.toSet());
+	}
+	
+	private static boolean received(RecordingStream stream, UpdateType type, RecordingStream other) {
+		return stream.packets(EntityPacket.class)
+				.anyMatch(p -> p.getType() == type && p.getEntity() == other.getEntity());
+	}
+	
+	@Test
+	public void testSubscriptionsFollowPlayers() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		world.findChunk(0, 0, 0).generate();
+		Location origin = world.getOrigin();
+		RecordingStream a = RecordingStream.createPlayer("a", origin);
+		RecordingStream b = RecordingStream.createPlayer("b", origin.shift(200, 0));
+		world.doRegister(a.getEntity());
+		world.doRegister(b.getEntity());
+		
+		assertEquals(Set.of(a.getPlayer()), nearby(world, origin));
+		assertEquals(Set.of(b.getPlayer()), nearby(world, origin.shift(200, 0)));
+		
+		a.clear();
+		b.clear();
+		world.moveEntity(b.getEntity(), origin.shift(30, 0), MoveType.UPDATE);
+		assertEquals(Set.of(a.getPlayer(), b.getPlayer()), nearby(world, origin));
+		assertTrue(received(a, UpdateType.CREATE, b));
+		assertTrue(received(b, UpdateType.CREATE, a));
+		
+		a.clear();
+		b.clear();
+		world.moveEntity(b.getEntity(), origin.shift(-200, 0), MoveType.UPDATE);
+		assertEquals(Set.of(a.getPlayer()), nearby(world, origin));
+		assertEquals(Set.of(b.getPlayer()), nearby(world, origin.shift(-200, 0)));
+		assertTrue(received(a, UpdateType.DESTROY, b));
+		assertTrue(received(b, UpdateType.DESTROY, a));
+		
+		world.doDeRegister(b.getEntity());
+		assertTrue(nearby(world, origin.shift(-200, 0)).isEmpty());
+		
+	}
+	
+}
@@ -0,0 +1,68 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+
+public class TestChunkTiles {
+	
+	private static Chunk createChunk() {
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		return world.findChunk(0, 0, 0).generate();
+	}
+	
+	@Test
+	public void testTypesRoundTripThroughPalette() {
+		
+		Chunk chunk = createChunk();
+		StaticChunkWorld world = chunk.getSpace();
+		TileType[] types = TileType.values();
+		for(int i=0; i<types.length; ++i)
+			world.setTile(chunk.getTile(i, 1), types[i]);
+		
+		for(int i=0; i<types.length; ++i) {
+			assertEquals(types[i], chunk.getType(i, 1));
+			assertEquals(types[i], chunk.getTile(i, 1).getType());
+		}
+		assertEquals(TileType.GRASS, chunk.getType(0, 0));
+		
+		Chunk copy = createChunk();
+		assertTrue(copy.readData(chunk.writeData()));
+		for(int i=0; i<types.length; ++i)
+			assertEquals(types[i], copy.getType(i, 1));
+		
+	}
+	
+	@Test
+	public void testTilesWithListenersArePinned() {
+		
+		Chunk chunk = createChunk();
+		assertNotSame(chunk.getTile(2, 3), chunk.getTile(2, 3));
+		assertFalse(chunk.isInUse());
+		
+		Tile tile = chunk.getTile(2, 3);
+		TileListener first = new TileListener() {}, second = new TileListener() {};
+		tile.addTileListener(first);
+		tile.addTileListener(second);
+		assertSame(tile, chunk.getTile(2, 3));
+		assertTrue(chunk.isInUse());
+		
+		//The tile stays pinned until its last listener is removed.
+		tile.removeTileHandler(first);
+		assertSame(tile, chunk.getTile(2, 3));
+		tile.removeTileHandler(second);
+		assertNotSame(tile, chunk.getTile(2, 3));
+		assertFalse(chunk.isInUse());
+		assertEquals(tile.getType(), chunk.getTile(2, 3).getType());
+		
+	}
+	
+}
@@ -0,0 +1,73 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.PerlinNoiseGenerator;
+
+public class TestGeneration {
+	
+	private static final long SEED = 20180815;
+	
+	private static void assertSameAsTiles(WorldGenerator generator, Location origin, int x, int y, int width, int height) {
+		byte[] types = new byte[width * height];
+		assertTrue(generator.generateRect(x, y, 0, width, height, types));
+		for(int j=0; j<height; ++j) {
+			for(int i=0; i<width; ++i) {
+				TileType expected = generator.generateTile(origin.shift(x + i, y + j)).getType();
+				assertEquals(expected.ordinal(), types[j * width + i]);
+			}
+		}
+	}
+	
+	@Test
+	public void testPerlinRectMatchesTiles() {
+		
+		PerlinNoiseGenerator generator = new PerlinNoiseGenerator(SEED);
+		StaticChunkWorld world = new StaticChunkWorld("Earth", generator);
+		Location origin = world.getOrigin().getTile().getLocation();
+		
+		assertSameAsTiles(generator, origin, -300, -300, 600, 20);
+		assertSameAsTiles(generator, origin, -7, 1234, 33, 41);
+		assertSameAsTiles(generator, origin, 5000, -5000, 1, 1);
+		
+	}
+	
+	@Test
+	public void testChunksUseRect() {
+		
+		PerlinNoiseGenerator generator = new PerlinNoiseGenerator(SEED);
+		StaticChunkWorld world = new StaticChunkWorld("Earth", generator);
+		Location origin = world.getOrigin().getTile().getLocation();
+		for(int x=-60; x<60; x+=7) {
+			for(int y=-60; y<60; y+=11) {
+				Location point = origin.shift(x, y);
+				assertEquals(generator.generateTile(point).getType(), point.getTile().getType());
+			}
+		}
+		
+	}
+	
+	@Test
+	public void testUnsupportedRect() {
+		
+		WorldGenerator generator = new WorldGenerator() {
+			@Override
+			protected TileElement doGenerateTile(Location point) {
+				return constructElement(point.getX() % 2 == 0 ? TileType.DIRT : TileType.SAND);
+			}
+		};
+		assertFalse(generator.generateRect(0, 0, 0, 4, 4, new byte[16]));
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", generator);
+		Location origin = world.getOrigin().getTile().getLocation();
+		assertEquals(TileType.DIRT, origin.shift(-2, 3).getTile().getType());
+		assertEquals(TileType.SAND, origin.shift(-1, 3).getTile().getType());
+		
+	}
+	
+}
@@ -1,5 +1,6 @@
 package com.podts.rpg.server.model.universe;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -8,6 +9,7 @@ import com.podts.rpg.server.model.universe.Location.Direction;
 import com.podts.rpg.server.model.universe.StaticChunkWorld.CLocation;
 import com.podts.rpg.server.model.universe.TileElement.TileType;
 import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.model.universe.region.RectangularRegion.Corner;
 
 public class TestLocation {
 	
@@ -47,4 +49,42 @@ public class TestLocation {
 		
 	}
 	
+	@Test
+	public void testChunkSizes() {
+		
+		for(int size : new int[] {16, 25, 32}) {
+			StaticChunkWorld space = new StaticChunkWorld("Earth", size, new FillGenerator(TileType.GRASS));
+			for(int x=-2*size; x<=2*size; ++x) {
+				final int y = -x / 3;
+				Location corner = space.findChunk(x, y, 0).getCorner(Corner.TOP_LEFT);
+				assertTrue(x >= corner.getX() && x < corner.getX() + size);
+				assertTrue(y >= corner.getY() && y < corner.getY() + size);
+				Location point = space.getOrigin().shift(x, y);
+				assertEquals(point, point.getTile().getLocation());
+			}
+		}
+		
+	}
+	
+	@Test
+	public void testGetTiles() {
+		
+		for(int size : new int[] {16, 25}) {
+			StaticChunkWorld space = new StaticChunkWorld("Earth", size, new FillGenerator(TileType.GRASS));
+			final int left = -size - 3, top = -2 * size + 5;
+			Location topLeft = space.getOrigin().getTile().getLocation().shift(left, top);
+			Tile[][] tiles = new Tile[3 * size + 1][2 * size - 7];
+			space.getTiles(tiles, topLeft);
+			for(int x=0; x<tiles.length; ++x) {
+				for(int y=0; y<tiles[x].length; ++y) {
+					Location point = space.getOrigin().shift(left + x, top + y);
+					assertEquals(point, tiles[x][y].getLocation());
+					assertEquals(point.getTile().getType(), tiles[x][y].getType());
+				}
+			}
+			assertEquals(12, space.selectTiles(topLeft, 4, 3).tiles().count());
+		}
+		
+	}
+	
 }
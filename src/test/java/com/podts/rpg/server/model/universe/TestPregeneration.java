@@ -0,0 +1,65 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.podts.rpg.server.model.universe.ChunkPregenerator.Progress;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.model.universe.storage.RegionFileStorage;
+
+public class TestPregeneration {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testChunksWithinRadiusAreGenerated() throws InterruptedException {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		List<Progress> reports = new ArrayList<>();
+		//A radius of 50 tiles is 2 chunks, which covers 13 chunks in a circle.
+		Progress progress = world.pregenerate(0, 0, 0, 50, reports::add);
+		
+		assertEquals(13, progress.getTotal());
+		assertTrue(progress.isDone());
+		assertEquals(13, world.generatedChunks().count());
+		assertTrue(world.findChunk(50, 0, 0).isGenerated());
+		assertTrue(world.findChunk(-50, 0, 0).isGenerated());
+		assertFalse(world.findChunk(50, 50, 0).isGenerated());
+		assertEquals(progress.toString(), reports.get(reports.size() - 1).toString());
+		
+		//Without storage the chunks could only come back by generating them again.
+		world.evictChunks(0, 0);
+		assertEquals(13, world.generatedChunks().count());
+		assertTrue(world.findChunk(50, 0, 0).isGenerated());
+		
+	}
+	
+	@Test
+	public void testPregeneratedChunksArePersisted() throws Exception {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		world.setStorage(new RegionFileStorage(folder.getRoot().toPath()));
+		world.pregenerate(0, 0, 0, 25, null);
+		
+		assertEquals(0, world.generatedChunks()
+				.filter(c -> c.isDirty())
+				.count());
+		assertNotNull(world.getStorage().load(1, 0, 0));
+		//Saved chunks can be loaded again, so they do not have to stay loaded.
+		assertTrue(world.evictChunks(0, 0) > 0);
+		world.getStorage().close();
+		
+	}
+	
+}
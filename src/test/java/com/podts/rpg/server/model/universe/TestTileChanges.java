@@ -0,0 +1,131 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.Chunk;
+import com.podts.rpg.server.model.universe.TileElement.TileType;
+import com.podts.rpg.server.model.universe.generators.FillGenerator;
+import com.podts.rpg.server.network.packet.TilePacket;
+
+public class TestTileChanges {
+	
+	@Test
+	public void testChangesAreBatched() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		//Generate everything in view up front so the view is sent right away instead of in the background.
+		for(int cx=-5; cx<=5; ++cx) {
+			for(int cy=-5; cy<=5; ++cy) {
+				world.findChunkAt(cx, cy, 0).generate();
+			}
+		}
+		Chunk chunk = world.findChunk(0, 0, 0);
+		RecordingStream stream = RecordingStream.createPlayer("a", world.getOrigin());
+		world.doRegister(stream.getEntity());
+		world.getTileChangeBroadcaster().flush();
+		stream.clear();
+		
+		for(int x=2; x<12; ++x) {
+			for(int y=3; y<13; ++y) {
+				world.setTile(chunk.getTile(x, y), TileType.WATER);
+			}
+		}
+		assertEquals(0, stream.getPackets().size());
+		assertEquals(1, world.getTileChangeBroadcaster().getQueuedCount());
+		
+		assertEquals(1, world.getTileChangeBroadcaster().flush());
+		List<TilePacket> packets = stream.packets(TilePacket.class)
+				.collect(Collectors.toList());
+		assertEquals(1, packets.size());
+		Tile[][] tiles = packets.get(0).getTiles();
+		assertEquals(10, tiles.length);
+		assertEquals(10, tiles[0].length);
+		assertEquals(chunk.getTile(2, 3).getLocation(), tiles[0][0].getLocation());
+		assertEquals(TileType.WATER, tiles[9][9].getType());
+		
+		assertEquals(0, world.getTileChangeBroadcaster().flush());
+		
+	}
+	
+	@Test
+	public void testSaturatedClientsAreSentTheirViewOnResume() {
+		
+		StaticChunkWorld world = new StaticChunkWorld("Earth", new FillGenerator(TileType.GRASS));
+		for(int cx=-6; cx<=6; ++cx) {
+			for(int cy=-5; cy<=5; ++cy) {
+				world.findChunkAt(cx, cy, 0).generate();
+			}
+		}
+		Chunk chunk = world.findChunk(0, 0, 0);
+		Location origin = world.getOrigin();
+		RecordingStream stream = RecordingStream.createPlayer("a", origin);
+		world.doRegister(stream.getEntity());
+		stream.clear();
+		
+		stream.setSaturated(true);
+		world.moveEntity(stream.getEntity(), origin.shift(1, 0), MoveType.UPDATE);
+		world.moveEntity(stream.getEntity(), origin.shift(2, 0), MoveType.UPDATE);
+		assertEquals(0, stream.packets(TilePacket.class).count());
+		
+		//Only the change from the view the client holds is sent.
+		stream.setSaturated(false);
+		world.resumeStreaming(stream.getPlayer(), false);
+		assertTrue(stream.packets(TilePacket.class).anyMatch(p -> p.getTiles().length == 2));
+		assertTrue(stream.packets(TilePacket.class).allMatch(p -> p.getTiles().length <= 2));
+		stream.clear();
+		
+		//A change the client missed makes the whole view be sent again, including the changed tile.
+		stream.setSaturated(true);
+		world.setTile(chunk.getTile(5, 5), TileType.WATER);
+		world.getTileChangeBroadcaster().flush();
+		assertEquals(0, stream.getPackets().size());
+		stream.setSaturated(false);
+		world.resumeStreaming(stream.getPlayer(), false);
+		assertTrue(stream.packets(TilePacket.class)
+				.flatMap(p -> Arrays.stream(p.getTiles()))
+				.flatMap(Arrays::stream)
+				.anyMatch(t -> t.getLocation().equals(chunk.getTile(5, 5).getLocation()) && t.getType() == TileType.WATER));
+		
+		stream.clear();
+		world.resumeStreaming(stream.getPlayer(), false);
+		assertEquals(0, stream.getPackets().size());
+		
+	}
+	
+	@Test
+	public void testRectanglesCoverChanges() {
+		
+		final int size = 25;
+		BitSet changed = new BitSet(size * size);
+		for(int i=0; i<size; ++i) {
+			changed.set(i * size + i);
+			changed.set(i * size + 3);
+		}
+		changed.set(5 * size, 5 * size + 20);
+		
+		BitSet covered = new BitSet(size * size);
+		TileChangeBroadcaster.rectangles(changed, size, (left, top, width, height) -> {
+			for(int y=top; y<top + height; ++y) {
+				for(int x=left; x<left + width; ++x) {
+					assertTrue(changed.get(y * size + x));
+					assertFalse(covered.get(y * size + x));
+					covered.set(y * size + x);
+				}
+			}
+		});
+		assertEquals(changed, covered);
+		
+	}
+	
+}
@@ -4,8 +4,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.podts.rpg.server.model.universe.storage.TestRegionFileStorage;
+
 @RunWith(Suite.class)
-@SuiteClasses({ TestDirections.class, TestLocation.class })
+@SuiteClasses({ TestDirections.class, TestLocation.class, TestChunkConcurrency.class, TestChunkEviction.class, TestRegionFileStorage.class, TestViewRing.class, TestChunkSubscriptions.class, TestChunkStreaming.class, TestTileChanges.class, TestGeneration.class, TestPregeneration.class, TestBenchmarkWorlds.class, TestChunkTiles.class, TestChunkPrefetcher.class })
 public class TestUniverse {
 	
 }
@@ -0,0 +1,79 @@
+package com.podts.rpg.server.model.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestViewRing {
+	
+	private static final int CHUNK_SIZE = 25;
+	private static final int CHUNK_HALF = (CHUNK_SIZE - 1) / 2;
+	
+	private static boolean isInView(int x, int y, int centerX, int centerY, double distance) {
+		return distance >= 0 && Location.distance(x, y, centerX, centerY) <= distance;
+	}
+	
+	private static Set<Long> collect(ViewRing ring, int fromX, int fromY, double fromDistance, int toX, int toY, double toDistance) {
+		Set<Long> result = new HashSet<>();
+		ring.changes(fromX, fromY, fromDistance, toX, toY, toDistance, (left, top, width, height) -> {
+			assertEquals(Math.floorDiv(left + CHUNK_HALF, CHUNK_SIZE), Math.floorDiv(left + width - 1 + CHUNK_HALF, CHUNK_SIZE));
+			assertEquals(Math.floorDiv(top + CHUNK_HALF, CHUNK_SIZE), Math.floorDiv(top + height - 1 + CHUNK_HALF, CHUNK_SIZE));
+			for(int x=left; x<left + width; ++x) {
+				for(int y=top; y<top + height; ++y) {
+					assertTrue(result.add(((long) x << 32) | (y & 0xFFFFFFFFL)));
+				}
+			}
+		});
+		return result;
+	}
+	
+	private static Set<Long> expected(int fromX, int fromY, double fromDistance, int toX, int toY, double toDistance) {
+		Set<Long> result = new HashSet<>();
+		final int reach = (int) toDistance + 1;
+		for(int x=toX - reach; x<=toX + reach; ++x) {
+			for(int y=toY - reach; y<=toY + reach; ++y) {
+				if(isInView(x, y, toX, toY, toDistance) && !isInView(x, y, fromX, fromY, fromDistance))
+					result.add(((long) x << 32) | (y & 0xFFFFFFFFL));
+			}
+		}
+		return result;
+	}
+	
+	@Test
+	public void testChanges() {
+		
+		ViewRing ring = new ViewRing(CHUNK_SIZE, CHUNK_HALF);
+		final int[][] moves = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, 1}, {7, -3}, {200, 0}};
+		for(double distance : new double[] {0, 1, 10, 12.5, 100}) {
+			for(int[] move : moves) {
+				final int fromX = 3, fromY = -12, toX = fromX + move[0], toY = fromY + move[1];
+				assertEquals(expected(fromX, fromY, distance, toX, toY, distance),
+						collect(ring, fromX, fromY, distance, toX, toY, distance));
+				assertEquals(expected(toX, toY, distance, fromX, fromY, distance),
+						collect(ring, toX, toY, distance, fromX, fromY, distance));
+			}
+		}
+		assertEquals(expected(0, 0, -1, 5, 5, 30), collect(ring, 0, 0, -1, 5, 5, 30));
+		
+	}
+	
+	@Test
+	public void testPerimeterOnly() {
+		
+		ViewRing ring = new ViewRing(CHUNK_SIZE, CHUNK_HALF);
+		final int[] counts = new int[2];
+		ring.changes(0, 0, 100, 1, 0, 100, (left, top, width, height) -> {
+			++counts[0];
+			counts[1] += width * height;
+		});
+		//A single tile on the leading edge of every row, in fewer packets than tiles.
+		assertEquals(201, counts[1]);
+		assertTrue(counts[0] < counts[1]);
+		
+	}
+	
+}
@@ -0,0 +1,176 @@
+package com.podts.rpg.server.model.universe.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
+import com.podts.rpg.server.model.universe.Universe;
+import com.podts.rpg.server.model.universe.Universe.WorldAlreadyExistsException;
+import com.podts.rpg.server.model.universe.generators.PerlinNoiseGenerator;
+
+public class TestRegionFileStorage {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static byte[] data(int length, int value) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte) value);
+		return data;
+	}
+	
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		
+		RegionFileStorage storage = new RegionFileStorage(folder.getRoot().toPath());
+		
+		assertNull(storage.load(0, 0, 0));
+		
+		storage.save(0, 0, 0, data(630, 1));
+		storage.save(-1, 40, 0, data(630, 2));
+		storage.save(0, 0, 1, data(630, 3));
+		
+		assertArrayEquals(data(630, 1), storage.load(0, 0, 0));
+		assertArrayEquals(data(630, 2), storage.load(-1, 40, 0));
+		assertArrayEquals(data(630, 3), storage.load(0, 0, 1));
+		assertNull(storage.load(1, 0, 0));
+		
+		storage.close();
+		
+	}
+	
+	@Test
+	public void testRegionsGroupChunksOfTheSameFile() throws IOException {
+		
+		RegionFileStorage storage = new RegionFileStorage(folder.getRoot().toPath());
+		final int size = RegionFile.SIZE;
+		assertEquals(storage.regionOf(0, 0, 0), storage.regionOf(size - 1, size - 1, 0));
+		assertTrue(storage.regionOf(0, 0, 0) != storage.regionOf(size, 0, 0));
+		assertTrue(storage.regionOf(0, 0, 0) != storage.regionOf(0, size, 0));
+		assertTrue(storage.regionOf(-1, 0, 0) != storage.regionOf(0, 0, 0));
+		storage.close();
+		
+	}
+	
+	@Test
+	public void testWorldsAreOnlySavedWithAWorldDirectory() throws WorldAlreadyExistsException {
+		
+		Universe universe = Universe.get();
+		StaticChunkWorld memory = (StaticChunkWorld) universe.createWorld("Memory", 1);
+		try {
+			assertNull(memory.getStorage());
+		} finally {
+			universe.deleteWorld(memory);
+		}
+		
+		universe.setWorldDirectory(folder.getRoot().toPath());
+		StaticChunkWorld saved = (StaticChunkWorld) universe.createWorld("Saved", 1);
+		try {
+			assertTrue(saved.getStorage() instanceof RegionFileStorage);
+			assertEquals(folder.getRoot().toPath().resolve("Saved"), ((RegionFileStorage) saved.getStorage()).getDirectory());
+		} finally {
+			universe.deleteWorld(saved);
+			universe.setWorldDirectory(null);
+		}
+		
+	}
+	
+	@Test
+	public void testSavedWorldsKeepTheirSeed() throws WorldAlreadyExistsException {
+		
+		Universe universe = Universe.get();
+		assertEquals(7, universe.loadSeed("Seeded", 7));
+		
+		universe.setWorldDirectory(folder.getRoot().toPath());
+		try {
+			StaticChunkWorld world = (StaticChunkWorld) universe.createWorld("Seeded", 7);
+			universe.deleteWorld(world);
+			assertTrue(folder.getRoot().toPath().resolve("Seeded").resolve(Universe.WORLD_PROPERTIES).toFile().isFile());
+			
+			//Reopening the world ignores the new seed so new chunks match the saved ones.
+			world = (StaticChunkWorld) universe.createWorld("Seeded", 8);
+			assertEquals(7, ((PerlinNoiseGenerator) world.getWorldGenerator()).getSeed());
+			universe.deleteWorld(world);
+			assertEquals(8, universe.loadSeed("Other", 8));
+		} finally {
+			universe.setWorldDirectory(null);
+		}
+		
+	}
+	
+	@Test
+	public void testReopenAndGrow() throws IOException {
+		
+		RegionFileStorage storage = new RegionFileStorage(folder.getRoot().toPath());
+		storage.save(3, 4, 0, data(100, 1));
+		storage.save(4, 4, 0, data(100, 2));
+		//Outgrows its sector so it has to be moved.
+		storage.save(3, 4, 0, data(RegionFile.SECTOR_SIZE + 1, 3));
+		storage.close();
+		
+		storage = new RegionFileStorage(folder.getRoot().toPath());
+		assertArrayEquals(data(RegionFile.SECTOR_SIZE + 1, 3), storage.load(3, 4, 0));
+		assertArrayEquals(data(100, 2), storage.load(4, 4, 0));
+		
+		storage.save(5, 4, 0, data(100, 4));
+		assertArrayEquals(data(RegionFile.SECTOR_SIZE + 1, 3), storage.load(3, 4, 0));
+		assertArrayEquals(data(100, 4), storage.load(5, 4, 0));
+		storage.close();
+		
+	}
+	
+	@Test
+	public void testFreedSectorsAreReused() throws IOException {
+		
+		try(RegionFile region = new RegionFile(folder.getRoot().toPath().resolve("region"))) {
+			region.write(0, 0, data(RegionFile.SECTOR_SIZE * 2, 1));
+			region.write(1, 0, data(100, 2));
+			region.flush();
+			final int sectors = region.getSectorCount();
+			for(int i=0; i<20; ++i) {
+				region.write(0, 0, data(RegionFile.SECTOR_SIZE * (i % 3 + 1), i));
+				region.write(1, 0, data(100, i));
+				region.flush();
+			}
+			assertArrayEquals(data(RegionFile.SECTOR_SIZE * 2, 19), region.read(0, 0));
+			assertArrayEquals(data(100, 19), region.read(1, 0));
+			//Every chunk is written beside its old data, so at most twice the space is needed.
+			assertTrue(region.getSectorCount() <= sectors * 2 + 3);
+		}
+		
+	}
+	
+	@Test
+	public void testHeaderOnlyChangesOnFlush() throws IOException {
+		
+		Path path = folder.getRoot().toPath().resolve("region");
+		try(RegionFile region = new RegionFile(path)) {
+			region.write(2, 2, data(100, 1));
+			region.flush();
+			region.write(2, 2, data(200, 2));
+			assertArrayEquals(data(200, 2), region.read(2, 2));
+			
+			//What a crash before the flush would leave behind.
+			try(RegionFile copy = new RegionFile(path)) {
+				assertArrayEquals(data(100, 1), copy.read(2, 2));
+			}
+			
+			region.flush();
+			try(RegionFile copy = new RegionFile(path)) {
+				assertArrayEquals(data(200, 2), copy.read(2, 2));
+			}
+		}
+		
+	}
+	
+}
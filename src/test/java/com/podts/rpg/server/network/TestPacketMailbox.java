@@ -0,0 +1,139 @@
+package com.podts.rpg.server.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+
+public class TestPacketMailbox {
+	
+	@Test
+	public void testFullMailboxesPauseTheirStream() {
+		
+		RecordingStream stream = new RecordingStream();
+		PacketMailbox mailbox = new PacketMailbox(stream, 4);
+		List<Integer> handled = new ArrayList<>();
+		for(int i=0; i<6; ++i) {
+			final int packet = i;
+			assertTrue(mailbox.offer(() -> handled.add(packet)));
+			assertEquals(i < 3, stream.isReading());
+		}
+		assertEquals(6, mailbox.getQueued());
+		assertEquals(6, mailbox.getHighWater());
+		assertTrue(mailbox.isPaused());
+		assertEquals(1, mailbox.getPauses());
+		
+		assertEquals(6, mailbox.drain());
+		assertEquals(0, mailbox.getQueued());
+		assertEquals(6, mailbox.getHandled());
+		assertEquals(6, mailbox.getReceived());
+		assertEquals(List.of(0, 1, 2, 3, 4, 5), handled);
+		assertFalse(mailbox.isPaused());
+		assertTrue(stream.isReading());
+		
+		//A stream that ignores the pause is not refused single packets, it has to be closed.
+		for(int i=0; i<4 * PacketMailbox.OVERFLOW_FACTOR; ++i)
+			assertTrue(mailbox.offer(() -> {}));
+		assertFalse(mailbox.offer(() -> {}));
+		
+	}
+	
+	@Test
+	public void testPacketsWaitForTheInboundPhase() {
+		
+		RecordingStream first = new RecordingStream(), second = new RecordingStream();
+		List<String> handled = new ArrayList<>();
+		try {
+			assertTrue(PacketHandler.enqueue(first, () -> handled.add("first 0")));
+			assertTrue(PacketHandler.enqueue(second, () -> handled.add("second 0")));
+			for(int i=1; i<PacketMailbox.DEFAULT_CAPACITY + 2; ++i) {
+				final int packet = i;
+				assertTrue(PacketHandler.enqueue(first, () -> handled.add("first " + packet)));
+			}
+			assertTrue(handled.isEmpty());
+			assertFalse(first.isReading());
+			assertTrue(second.isReading());
+			assertTrue(PacketHandler.getQueuedPackets() >= PacketMailbox.DEFAULT_CAPACITY + 3);
+			assertTrue(PacketHandler.getMailboxHighWater() >= PacketMailbox.DEFAULT_CAPACITY + 2);
+			assertTrue(PacketHandler.getPausedStreams() >= 1);
+			
+			PacketHandler.drainMailboxes();
+			assertEquals(PacketMailbox.DEFAULT_CAPACITY + 3, handled.size());
+			assertTrue(handled.contains("second 0"));
+			assertTrue(handled.indexOf("first 0") < handled.indexOf("first 1"));
+			assertTrue(first.isReading());
+			
+			//A closed stream does not get its mailbox back.
+			first.closeStream();
+			PacketHandler.removeMailbox(first);
+			assertFalse(PacketHandler.enqueue(first, () -> handled.add("late")));
+			assertFalse(PacketHandler.mailboxes().anyMatch(m -> m.getStream() == first));
+		} finally {
+			PacketHandler.removeMailbox(first);
+			PacketHandler.removeMailbox(second);
+		}
+		
+	}
+	
+	@Test
+	public void testStreamsThatIgnoreThePauseAreClosed() {
+		
+		RecordingStream stream = new RecordingStream();
+		final long disconnects = PacketHandler.getOverflowDisconnects();
+		try {
+			for(int i=0; i<PacketMailbox.DEFAULT_CAPACITY * PacketMailbox.OVERFLOW_FACTOR; ++i)
+				assertTrue(PacketHandler.enqueue(stream, () -> {}));
+			assertTrue(stream.isOpen());
+			assertFalse(PacketHandler.enqueue(stream, () -> {}));
+			assertFalse(stream.isOpen());
+			assertEquals(disconnects + 1, PacketHandler.getOverflowDisconnects());
+		} finally {
+			PacketHandler.removeMailbox(stream);
+		}
+		
+	}
+	
+	@Test
+	public void testDrainsNeverOverlap() throws InterruptedException {
+		
+		PacketMailbox mailbox = new PacketMailbox(new RecordingStream(), 100000);
+		AtomicBoolean running = new AtomicBoolean();
+		AtomicBoolean overlapped = new AtomicBoolean();
+		AtomicInteger next = new AtomicInteger();
+		AtomicBoolean outOfOrder = new AtomicBoolean();
+		for(int i=0; i<20000; ++i) {
+			final int packet = i;
+			mailbox.offer(() -> {
+				if(!running.compareAndSet(false, true))
+					overlapped.set(true);
+				if(next.getAndIncrement() != packet)
+					outOfOrder.set(true);
+				running.set(false);
+			});
+		}
+		Thread[] threads = new Thread[4];
+		for(int i=0; i<threads.length; ++i) {
+			threads[i] = new Thread(() -> {
+				while(mailbox.getQueued() > 0)
+					mailbox.drain();
+			});
+			threads[i].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+		
+		assertFalse(overlapped.get());
+		assertFalse(outOfOrder.get());
+		assertEquals(20000, mailbox.getHandled());
+		
+	}
+	
+}
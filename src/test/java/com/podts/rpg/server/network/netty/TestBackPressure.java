@@ -0,0 +1,131 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.BenchmarkWorld;
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
+import com.podts.rpg.server.network.Packet;
+import com.podts.rpg.server.network.packet.ChunkPacket;
+import com.podts.rpg.server.network.packet.EntityPacket;
+import com.podts.rpg.server.network.packet.MessagePacket;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class TestBackPressure {
+	
+	private static void setWritable(EmbeddedChannel channel, boolean writable) {
+		channel.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+		//The change is announced later on the event loop.
+		channel.runPendingTasks();
+	}
+	
+	@Test
+	public void testSaturatedStreamHoldsAndMerges() {
+		
+		EmbeddedChannel channel = new EmbeddedChannel(BackPressure.HANDLER);
+		NettyStream stream = new NettyStream(channel);
+		StaticChunkWorld world = BenchmarkWorld.FLAT.create();
+		RecordingStream other = RecordingStream.createPlayer("a", world.getOrigin());
+		
+		setWritable(channel, false);
+		assertTrue(stream.getBackPressure().isHolding());
+		assertTrue(stream.isSaturated());
+		
+		Packet chunk = ChunkPacket.constructDestroy(0, 0, 0);
+		stream.sendPacket(chunk);
+		stream.sendPacket(EntityPacket.constructUpdate(other.getEntity()));
+		Packet latest = EntityPacket.constructUpdate(other.getEntity());
+		stream.sendPacket(latest);
+		Packet message = new MessagePacket("hi");
+		stream.sendPacket(message);
+		
+		//Only what is not tile streaming or entity updates gets through.
+		assertSame(message, channel.readOutbound());
+		assertNull(channel.readOutbound());
+		assertEquals(2, stream.getBackPressure().getHeld());
+		assertEquals(1, stream.getBackPressure().getMerged());
+		
+		setWritable(channel, true);
+		assertFalse(stream.getBackPressure().isHolding());
+		assertSame(chunk, channel.readOutbound());
+		assertSame(latest, channel.readOutbound());
+		assertNull(channel.readOutbound());
+		
+		channel.finishAndReleaseAll();
+		
+	}
+	
+	@Test
+	public void testTilesPastTheLimitAreDropped() {
+		
+		EmbeddedChannel channel = new EmbeddedChannel(BackPressure.HANDLER);
+		NettyStream stream = new NettyStream(channel);
+		
+		setWritable(channel, false);
+		for(int i=0; i<BackPressure.MAX_HELD_TILES; ++i)
+			stream.sendPacket(ChunkPacket.constructDestroy(i, 0, 0));
+		assertFalse(stream.getBackPressure().isTilesDropped());
+		assertEquals(BackPressure.MAX_HELD_TILES, stream.getBackPressure().getHeld());
+		
+		//Every held tile packet is dropped with the first one past the limit, and so is every later one.
+		stream.sendPacket(ChunkPacket.constructDestroy(-1, 0, 0));
+		stream.sendPacket(ChunkPacket.constructDestroy(-2, 0, 0));
+		assertTrue(stream.getBackPressure().isTilesDropped());
+		assertEquals(BackPressure.MAX_HELD_TILES + 2, stream.getBackPressure().getDropped());
+		
+		setWritable(channel, true);
+		assertFalse(stream.getBackPressure().isTilesDropped());
+		assertNull(channel.readOutbound());
+		
+		channel.finishAndReleaseAll();
+		
+	}
+	
+	@Test
+	public void testDestroyDropsHeldUpdate() {
+		
+		EmbeddedChannel channel = new EmbeddedChannel(BackPressure.HANDLER);
+		NettyStream stream = new NettyStream(channel);
+		StaticChunkWorld world = BenchmarkWorld.FLAT.create();
+		RecordingStream other = RecordingStream.createPlayer("a", world.getOrigin());
+		
+		setWritable(channel, false);
+		stream.sendPacket(EntityPacket.constructUpdate(other.getEntity()));
+		Packet destroy = EntityPacket.constructDestroy(other.getEntity());
+		stream.sendPacket(destroy);
+		assertEquals(1, stream.getBackPressure().getDropped());
+		
+		setWritable(channel, true);
+		assertSame(destroy, channel.readOutbound());
+		assertNull(channel.readOutbound());
+		
+		channel.finishAndReleaseAll();
+		
+	}
+	
+	@Test
+	public void testStreamThatStaysSaturatedIsClosed() throws InterruptedException {
+		
+		EmbeddedChannel channel = new EmbeddedChannel(BackPressure.HANDLER);
+		NettyStream stream = new NettyStream(channel, TimeUnit.MILLISECONDS.toNanos(1));
+		
+		setWritable(channel, false);
+		stream.sendPacket(ChunkPacket.constructDestroy(0, 0, 0));
+		Thread.sleep(10);
+		channel.runScheduledPendingTasks();
+		
+		assertFalse(channel.isOpen());
+		assertEquals(1, stream.getBackPressure().getDropped());
+		
+	}
+	
+}
@@ -0,0 +1,97 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.BenchmarkWorld;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
+import com.podts.rpg.server.network.Packet;
+import com.podts.rpg.server.network.packet.EntityPacket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class TestCompactEntityUpdates {
+	
+	private static byte[] encode(EmbeddedChannel channel, Packet packet) {
+		channel.writeOutbound(packet);
+		ByteBuf buf = channel.readOutbound();
+		try {
+			byte[] bytes = new byte[buf.readableBytes()];
+			buf.readBytes(bytes);
+			return bytes;
+		} finally {
+			buf.release();
+		}
+	}
+	
+	private static EmbeddedChannel createChannel(WireProtocol protocol) {
+		EmbeddedChannel channel = new EmbeddedChannel(new DefaultPacketEncoder());
+		new NettyStream(channel).setProtocol(protocol);
+		return channel;
+	}
+	
+	@Test
+	public void testNegotiate() {
+		assertEquals(WireProtocol.LEGACY, WireProtocol.negotiate(-1));
+		assertEquals(WireProtocol.LEGACY, WireProtocol.negotiate(0));
+		assertEquals(WireProtocol.COMPACT, WireProtocol.negotiate(1));
+		//A newer client gets the newest protocol the server knows.
+		assertEquals(WireProtocol.COMPACT, WireProtocol.negotiate(100));
+	}
+	
+	@Test
+	public void testUpdatesAreDeltas() throws InterruptedException {
+		
+		StaticChunkWorld world = BenchmarkWorld.FLAT.create();
+		world.pregenerate(0, 0, 0, 20, null);
+		RecordingStream other = RecordingStream.createPlayer("a", world.getOrigin().shift(5, -3));
+		world.doRegister(other.getEntity());
+		EmbeddedChannel compact = createChannel(WireProtocol.COMPACT);
+		EmbeddedChannel legacy = createChannel(WireProtocol.LEGACY);
+		
+		encode(compact, EntityPacket.constructCreate(other.getEntity()));
+		encode(legacy, EntityPacket.constructCreate(other.getEntity()));
+		
+		world.moveEntity(other.getEntity(), other.getEntity().getLocation().shift(1, -2), MoveType.UPDATE);
+		byte[] delta = encode(compact, EntityPacket.constructUpdate(other.getEntity()));
+		byte[] full = encode(legacy, EntityPacket.constructUpdate(other.getEntity()));
+		
+		//Opcode, type, ID and the zigzag encoded difference of 1, -2 and 0.
+		final int end = delta.length;
+		assertTrue(end <= 1 + 1 + 5 + 3);
+		assertEquals(3, delta[1]);
+		assertEquals(2, delta[end - 3]);
+		assertEquals(3, delta[end - 2]);
+		assertEquals(0, delta[end - 1]);
+		//The legacy format is unchanged.
+		assertEquals(1 + 1 + 4 + 12, full.length);
+		
+		compact.finishAndReleaseAll();
+		legacy.finishAndReleaseAll();
+		
+	}
+	
+	@Test
+	public void testUpdateWithoutCreateIsAbsolute() {
+		
+		StaticChunkWorld world = BenchmarkWorld.FLAT.create();
+		RecordingStream other = RecordingStream.createPlayer("a", world.getOrigin());
+		EmbeddedChannel compact = createChannel(WireProtocol.COMPACT);
+		
+		byte[] update = encode(compact, EntityPacket.constructUpdate(other.getEntity()));
+		assertEquals(1, update[1]);
+		assertTrue(update.length < 1 + 1 + 4 + 12);
+		encode(compact, EntityPacket.constructDestroy(other.getEntity()));
+		//Once destroyed the next update has nothing to be relative to.
+		assertEquals(1, encode(compact, EntityPacket.constructUpdate(other.getEntity()))[1]);
+		
+		compact.finishAndReleaseAll();
+		
+	}
+	
+}
@@ -0,0 +1,59 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.network.packet.MessagePacket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class TestEncryptedPackets {
+	
+	private static String decryptMessage(NettyStream stream, ByteBuf buf) throws GeneralSecurityException {
+		buf.readByte();
+		byte[] encrypted = new byte[buf.readInt()];
+		buf.readBytes(encrypted);
+		assertEquals(0, buf.readableBytes());
+		
+		Cipher cipher = Cipher.getInstance("AES");
+		cipher.init(Cipher.DECRYPT_MODE, stream.getSecretKey());
+		ByteBuffer plain = ByteBuffer.wrap(cipher.doFinal(encrypted));
+		byte[] message = new byte[plain.getInt()];
+		plain.get(message);
+		return new String(message, StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void testCipherIsReusedAcrossPackets() throws GeneralSecurityException {
+		
+		EmbeddedChannel channel = new EmbeddedChannel();
+		NettyStream stream = new NettyStream(channel);
+		Cipher cipher = stream.getCipher();
+		
+		for(String message : new String[] {"Hello", "A longer message than one AES block.", ""}) {
+			MessagePacket packet = new MessagePacket(message);
+			ByteBuf buf = Unpooled.buffer(DefaultPacketEncoder.estimateSize(stream, packet));
+			try {
+				assertTrue(DefaultPacketEncoder.writePacket(stream, packet, buf));
+				assertEquals(message, decryptMessage(stream, buf));
+			} finally {
+				buf.release();
+			}
+		}
+		assertSame(cipher, stream.getCipher());
+		channel.finishAndReleaseAll();
+		
+	}
+	
+}
@@ -0,0 +1,41 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class TestFlushThresholdHandler {
+	
+	@Test
+	public void testWritesWaitUntilThreshold() {
+		
+		FlushThresholdHandler handler = new FlushThresholdHandler(100);
+		EmbeddedChannel channel = new EmbeddedChannel(handler);
+		
+		channel.write(Unpooled.wrappedBuffer(new byte[40]));
+		channel.write(Unpooled.wrappedBuffer(new byte[40]));
+		assertNull(channel.readOutbound());
+		assertEquals(80, handler.getPending());
+		
+		channel.write(Unpooled.wrappedBuffer(new byte[40]));
+		assertEquals(0, handler.getPending());
+		for(int i=0; i<3; ++i)
+			((ByteBuf) channel.readOutbound()).release();
+		assertNull(channel.readOutbound());
+		
+		channel.write(Unpooled.wrappedBuffer(new byte[10]));
+		assertNull(channel.readOutbound());
+		channel.flush();
+		assertEquals(0, handler.getPending());
+		((ByteBuf) channel.readOutbound()).release();
+		
+		channel.finishAndReleaseAll();
+		
+	}
+	
+}
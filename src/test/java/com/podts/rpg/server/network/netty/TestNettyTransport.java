@@ -0,0 +1,37 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.netty.channel.EventLoopGroup;
+
+public class TestNettyTransport {
+	
+	@Test
+	public void testFallbackIsAlwaysAvailable() {
+		assertTrue(NettyTransport.best().isAvailable());
+		for(NettyTransport transport : NettyTransport.values()) {
+			assertTrue(transport.orFallback().isAvailable());
+			if(!transport.isAvailable())
+				assertEquals(NettyTransport.NIO, transport.orFallback());
+		}
+	}
+	
+	@Test
+	public void testEventLoopGroupsHaveRequestedThreads() throws InterruptedException {
+		EventLoopGroup group = NettyTransport.best().createEventLoopGroup(3);
+		try {
+			int loops = 0;
+			for(Object loop : group)
+				++loops;
+			assertEquals(3, loops);
+		} finally {
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS).await();
+		}
+	}
+	
+}
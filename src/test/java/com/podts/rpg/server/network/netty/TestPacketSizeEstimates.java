@@ -0,0 +1,74 @@
+package com.podts.rpg.server.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.podts.rpg.server.RecordingStream;
+import com.podts.rpg.server.model.universe.BenchmarkWorld;
+import com.podts.rpg.server.model.universe.Location.MoveType;
+import com.podts.rpg.server.model.universe.StaticChunkWorld;
+import com.podts.rpg.server.model.universe.StaticChunkWorld.StreamMode;
+import com.podts.rpg.server.network.Packet;
+import com.podts.rpg.server.network.packet.ChunkPacket;
+import com.podts.rpg.server.network.packet.EntityPacket;
+import com.podts.rpg.server.network.packet.TilePacket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class TestPacketSizeEstimates {
+	
+	private static int encodedSize(Packet packet) {
+		ByteBuf buf = Unpooled.buffer(DefaultPacketEncoder.estimateSize(null, packet));
+		try {
+			assertTrue(DefaultPacketEncoder.writePacket(null, packet, buf));
+			return buf.readableBytes();
+		} finally {
+			buf.release();
+		}
+	}
+	
+	private static int checkViewPackets(StreamMode mode) throws InterruptedException {
+		StaticChunkWorld world = BenchmarkWorld.TERRAIN.create()
+				.setStreamMode(mode);
+		world.pregenerate(0, 0, 0, 150, null);
+		RecordingStream stream = RecordingStream.createPlayer("a", world.getOrigin());
+		world.doRegister(stream.getEntity());
+		world.moveEntity(stream.getEntity(), world.getOrigin().shift(25, 1), MoveType.UPDATE);
+		
+		int checked = 0;
+		for(Packet packet : stream.getPackets()) {
+			if(packet instanceof TilePacket || packet instanceof ChunkPacket) {
+				assertEquals(DefaultPacketEncoder.estimateSize(null, packet), encodedSize(packet));
+				++checked;
+			}
+		}
+		return checked;
+	}
+	
+	@Test
+	public void testTileEstimatesAreExact() throws InterruptedException {
+		assertTrue(checkViewPackets(StreamMode.TILES) > 0);
+		assertTrue(checkViewPackets(StreamMode.CHUNKS) > 0);
+	}
+	
+	@Test
+	public void testEntityEstimates() {
+		
+		StaticChunkWorld world = BenchmarkWorld.FLAT.create();
+		RecordingStream stream = RecordingStream.createPlayer("Ünïcödé", world.getOrigin());
+		
+		Packet create = EntityPacket.constructCreate(stream.getEntity());
+		assertTrue(DefaultPacketEncoder.estimateSize(null, create) >= encodedSize(create));
+		
+		Packet update = EntityPacket.constructUpdate(stream.getEntity());
+		assertEquals(DefaultPacketEncoder.estimateSize(null, update), encodedSize(update));
+		
+		Packet destroy = EntityPacket.constructDestroy(stream.getEntity());
+		assertEquals(DefaultPacketEncoder.estimateSize(null, destroy), encodedSize(destroy));
+		
+	}
+	
+}
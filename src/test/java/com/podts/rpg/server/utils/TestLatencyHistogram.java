@@ -0,0 +1,51 @@
+package com.podts.rpg.server.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+	
+	private static void assertClose(long expected, long actual) {
+		assertTrue(expected + " != " + actual, Math.abs(expected - actual) <= expected / 64 + 1);
+	}
+	
+	@Test
+	public void testPercentiles() {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for(long i=1; i<=100000; ++i) {
+			histogram.record(i * 1000);
+		}
+		
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000000, histogram.getMax());
+		assertClose(50000000, histogram.getPercentile(50));
+		assertClose(99000000, histogram.getPercentile(99));
+		assertClose(99900000, histogram.getPercentile(99.9));
+		assertEquals(100000000, histogram.getPercentile(100));
+		assertClose(1000, histogram.getPercentile(0));
+		
+	}
+	
+	@Test
+	public void testSmallAndHugeValues() {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long i=0; i<128; ++i) {
+			histogram.record(i);
+		}
+		assertEquals(63, histogram.getPercentile(50));
+		
+		histogram.reset();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(2, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(50));
+		assertTrue(histogram.getPercentile(100) > 1L << 41);
+		
+	}
+	
+}
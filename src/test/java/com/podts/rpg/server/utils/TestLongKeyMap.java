@@ -0,0 +1,134 @@
+package com.podts.rpg.server.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestLongKeyMap {
+	
+	@Test
+	public void testNegativeAndPackedKeys() {
+		
+		LongKeyMap<String> map = new LongKeyMap<>();
+		map.put(-1, "minus one");
+		map.put(Long.MIN_VALUE, "min");
+		map.put(LongKeyMap.pack(-5, -7), "packed");
+		map.put(LongKeyMap.pack(-5, 7), "other packed");
+		
+		assertEquals("minus one", map.get(-1));
+		assertEquals("min", map.get(Long.MIN_VALUE));
+		assertEquals("packed", map.get(LongKeyMap.pack(-5, -7)));
+		assertEquals("other packed", map.get(LongKeyMap.pack(-5, 7)));
+		assertNull(map.get(LongKeyMap.pack(5, -7)));
+		assertEquals(4, map.size());
+		
+		long key = LongKeyMap.pack(-5, -7);
+		assertEquals(-5, LongKeyMap.unpackHigh(key));
+		assertEquals(-7, LongKeyMap.unpackLow(key));
+		
+	}
+	
+	@Test
+	public void testRemoveAndPutAcrossRebuild() {
+		
+		LongKeyMap<Long> map = new LongKeyMap<>(4);
+		for(long i=0; i<16; ++i)
+			map.put(i, i);
+		for(long i=0; i<16; i+=2)
+			assertEquals(Long.valueOf(i), map.remove(i));
+		assertNull(map.remove(0));
+		
+		//Enough puts to rebuild the table several times over the removed slots.
+		for(long i=16; i<1000; ++i)
+			map.put(i, i);
+		for(long i=0; i<16; i+=2)
+			assertNull(map.put(i, -i));
+		
+		assertEquals(1000, map.size());
+		for(long i=0; i<1000; ++i)
+			assertEquals(Long.valueOf(i < 16 && i % 2 == 0 ? -i : i), map.get(i));
+		assertEquals(1000, map.values().count());
+		
+	}
+	
+	@Test
+	public void testPutIfAbsent() {
+		
+		LongKeyMap<String> map = new LongKeyMap<>();
+		assertNull(map.putIfAbsent(3, "a"));
+		assertEquals("a", map.putIfAbsent(3, "b"));
+		assertEquals("a", map.get(3));
+		assertEquals(1, map.size());
+		
+		map.remove(3);
+		assertNull(map.putIfAbsent(3, "c"));
+		assertEquals("c", map.get(3));
+		
+	}
+	
+	@Test
+	public void testConditionalRemove() {
+		
+		LongKeyMap<String> map = new LongKeyMap<>();
+		String value = new String("a");
+		map.put(1, value);
+		
+		//Values are compared by identity.
+		assertFalse(map.remove(1, new String("a")));
+		assertFalse(map.remove(2, value));
+		assertEquals(value, map.get(1));
+		assertTrue(map.remove(1, value));
+		assertNull(map.get(1));
+		assertTrue(map.isEmpty());
+		
+	}
+	
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		
+		final LongKeyMap<Long> map = new LongKeyMap<>();
+		final int stable = 100;
+		for(long i=0; i<stable; ++i)
+			map.put(-i, -i);
+		
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<String> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			while(!done.get()) {
+				for(long i=0; i<stable; ++i) {
+					Long value = map.get(-i);
+					if(value == null || value != -i)
+						failure.compareAndSet(null, "Key " + -i + " had " + value);
+				}
+				for(long i=1; i<5000; i+=97) {
+					Long value = map.get(i);
+					if(value != null && value != i)
+						failure.compareAndSet(null, "Key " + i + " had " + value);
+				}
+			}
+		});
+		reader.start();
+		
+		for(int round=0; round<20; ++round) {
+			for(long i=1; i<5000; ++i)
+				map.put(i, i);
+			for(long i=1; i<5000; ++i)
+				map.remove(i);
+		}
+		done.set(true);
+		reader.join();
+		
+		assertNull(failure.get());
+		assertEquals(stable, map.size());
+		assertEquals(stable, map.values().collect(Collectors.toSet()).size());
+		
+	}
+	
+}